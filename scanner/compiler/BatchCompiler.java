@@ -0,0 +1,268 @@
+package compiler;
+
+import compiler.backend.CompilerBackend;
+import compiler.common.AtomList;
+import compiler.frontend.CompilerFrontend;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many source files in one JVM, each file runs through the frontend and the backend on a worker pool.
+ * A file that fails to compile is reported in its result and doesn't stop the others.
+ */
+public class BatchCompiler {
+    public static final String SOURCE_EXTENSION = ".txt";
+
+    private final int workers;
+    private final boolean virtualThreads;
+    private final int optimizationLevel;
+    private final boolean localOptimization;
+    private final CompileCache cache;
+
+    /**
+     * @param workers the number of platform threads compiling at once, ignored for virtual threads
+     * @param virtualThreads whether each file is compiled on its own virtual thread
+     * @param optimizationLevel the level the global optimizer runs at on every file
+     * @param localOptimization whether redundant loads and stores are removed in every file
+     * @param cache the cache compiled images are looked up in and stored to, or null to compile every file
+     */
+    public BatchCompiler(int workers, boolean virtualThreads, int optimizationLevel, boolean localOptimization, CompileCache cache) {
+        this.workers = workers;
+        this.virtualThreads = virtualThreads;
+        this.optimizationLevel = optimizationLevel;
+        this.localOptimization = localOptimization;
+        this.cache = cache;
+    }
+
+    /**
+     * The outcome of compiling one file
+     * @param source the source file
+     * @param output the machine image written for it
+     * @param nanos the time the file took to compile
+     * @param failure why the file didn't compile, or null if it did
+     */
+    public record Result(Path source, Path output, long nanos, Throwable failure) {
+        public boolean succeeded() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * A batch of sources and the directory their relative output paths start from
+     * @param base the directory the sources were found in
+     * @param files the sources found
+     * @param matcher tells whether a file that appears later belongs to the sources
+     * @param recursive whether sources can appear anywhere below the base, or only next to the files found
+     */
+    public record Sources(Path base, List<Path> files, PathMatcher matcher, boolean recursive) {}
+
+    /**
+     * Finds the source files a batch input names, leaving out anything inside the output directory
+     * when a directory or glob is searched, so earlier outputs are never taken for sources
+     * @param input a directory whose .txt files are all compiled, a glob such as src/*.txt,
+     *              or @ followed by a manifest file listing one source per line
+     * @param outputDirectory the directory the images are written to, or null if nothing is written
+     * @return the sources in a stable order
+     */
+    public static Sources findSources(String input, Path outputDirectory) throws IOException {
+        Sources sources = findSources(input);
+
+        if (outputDirectory == null || !sources.recursive()) {
+            return sources;  // Files named one by one are compiled wherever they are
+        }
+
+        Path excluded = outputDirectory.toAbsolutePath().normalize();
+        PathMatcher matcher = file -> !file.toAbsolutePath().normalize().startsWith(excluded) && sources.matcher().matches(file);
+
+        return new Sources(sources.base(), sources.files().stream().filter(matcher::matches).toList(), matcher, true);
+    }
+
+    /**
+     * Finds the source files a batch input names
+     * @param input a directory whose .txt files are all compiled, a glob such as src/*.txt,
+     *              or @ followed by a manifest file listing one source per line
+     * @return the sources in a stable order
+     */
+    public static Sources findSources(String input) throws IOException {
+        if (input.startsWith("@")) {
+            // Manifest paths are relative to the manifest, blank lines and lines starting with # are skipped
+            Path manifest = Path.of(input.substring(1)).toAbsolutePath();
+            Path base = manifest.getParent();
+            List<Path> files = new ArrayList<>();
+
+            for (String line : Files.readAllLines(manifest)) {
+                String entry = line.strip();
+
+                if (!entry.isEmpty() && !entry.startsWith("#")) {
+                    files.add(base.resolve(entry).normalize());
+                }
+            }
+
+            return new Sources(base, files, files::contains, false);
+        }
+
+        Path path = Path.of(input);
+
+        if (Files.isDirectory(path)) {
+            PathMatcher matcher = file -> file.getFileName().toString().endsWith(SOURCE_EXTENSION);
+
+            return new Sources(path, walk(path, matcher), matcher, true);
+        }
+
+        // Everything before the first component with a wildcard is the directory searched
+        Path base = path.getRoot() != null ? path.getRoot() : Path.of("");
+
+        for (Path component : path) {
+            if (component.toString().matches(".*[*?\\[{].*")) {
+                break;
+            }
+
+            base = base.resolve(component);
+        }
+
+        if (base.equals(path)) {
+            List<Path> files = List.of(path.toAbsolutePath());
+
+            return new Sources(path.toAbsolutePath().getParent(), files, files::contains, false);
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+
+        return new Sources(base, walk(base, matcher), matcher, true);
+    }
+
+    /**
+     * Compiles every source and writes one machine image per source. Sources that differ only in their
+     * extension would write the same image, only the first of them is compiled and the others fail
+     * @param sources the sources to compile
+     * @param outputDirectory the directory the images are written to, mirroring the layout of the sources
+     * @return the results in the order of the sources
+     */
+    public List<Result> compile(Sources sources, Path outputDirectory) throws InterruptedException {
+        List<Future<Result>> futures = new ArrayList<>();
+        Map<Path, Path> writers = new HashMap<>();  // Source Writing Each Output
+        ExecutorService executor = createExecutor();
+
+        try {
+            for (Path source : sources.files()) {
+                Path output = outputPath(sources.base(), source, outputDirectory);
+                Path writer = writers.putIfAbsent(output.toAbsolutePath().normalize(), source);
+
+                if (writer != null) {
+                    Result collision = new Result(source, output, 0,
+                            new IllegalStateException("%s is already written for %s".formatted(output, writer)));
+
+                    futures.add(CompletableFuture.completedFuture(collision));
+                    continue;
+                }
+
+                futures.add(executor.submit(() -> compile(source, output)));
+            }
+
+            List<Result> results = new ArrayList<>();
+
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Batch worker failed", e.getCause());
+                }
+            }
+
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the number of files compiled, the time taken and every failure
+     * @param results the results of a batch
+     * @param wallNanos the time the whole batch took
+     */
+    public static void printSummary(List<Result> results, long wallNanos) {
+        long failed = results.stream().filter(result -> !result.succeeded()).count();
+        long totalNanos = results.stream().mapToLong(Result::nanos).sum();
+
+        for (Result result : results) {
+            if (!result.succeeded()) {
+                System.out.printf("FAILED %s: %s%n", result.source(), describe(result.failure()));
+            }
+        }
+
+        System.out.printf("Compiled %d of %d files in %.1f ms (%d failed)%n",
+                results.size() - failed, results.size(), wallNanos / 1e6, failed);
+
+        if (!results.isEmpty()) {
+            Result slowest = results.stream().max(Comparator.comparingLong(Result::nanos)).get();
+
+            System.out.printf("Average %.2f ms per file, slowest %s at %.2f ms%n",
+                    totalNanos / 1e6 / results.size(), slowest.source(), slowest.nanos() / 1e6);
+        }
+    }
+
+    private Result compile(Path source, Path output) {
+        long start = System.nanoTime();
+
+        try {
+            byte[] memoryBytes;
+
+            if (cache != null) {
+                memoryBytes = cache.compileImage(source.toString(), false, optimizationLevel, localOptimization);
+            } else {
+                AtomList atoms = CompilerFrontend.compile(source.toString(), false, optimizationLevel);
+                memoryBytes = CompilerBackend.generate(atoms, localOptimization).encode();
+            }
+
+            if (output.getParent() != null) {
+                Files.createDirectories(output.getParent());
+            }
+
+            CompilerBackend.writeMemory(memoryBytes, output.toString());
+
+            return new Result(source, output, System.nanoTime() - start, null);
+        } catch (Exception | OutOfMemoryError e) {
+            // Memory reports a program that doesn't fit with an OutOfMemoryError, it only concerns this file
+            return new Result(source, output, System.nanoTime() - start, e);
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        return virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(workers);
+    }
+
+    static Path outputPath(Path base, Path source, Path outputDirectory) {
+        Path absoluteBase = base.toAbsolutePath().normalize();
+        Path absoluteSource = source.toAbsolutePath().normalize();
+        Path relative = absoluteSource.startsWith(absoluteBase) ? absoluteBase.relativize(absoluteSource) : absoluteSource.getFileName();
+        String name = relative.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+
+        return outputDirectory.resolve(relative).resolveSibling((extension > 0 ? name.substring(0, extension) : name) + ".bin");
+    }
+
+    private static List<Path> walk(Path directory, PathMatcher matcher) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).filter(matcher::matches).sorted().toList();
+        }
+    }
+
+    private static String describe(Throwable failure) {
+        return failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+    }
+}
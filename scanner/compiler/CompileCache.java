@@ -0,0 +1,307 @@
+package compiler;
+
+import compiler.backend.AtomReader;
+import compiler.backend.CompilerBackend;
+import compiler.backend.Memory;
+import compiler.common.AtomFormat;
+import compiler.common.AtomList;
+import compiler.frontend.AtomWriter;
+import compiler.frontend.CompilerFrontend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * An on disk cache of compiled atoms and machine images, keyed by a hash of the source bytes and the
+ * optimization options that affect the result. Entries are written to a temporary file and moved into place,
+ * so any number of threads and processes can share a cache directory and never read half an entry.
+ * When the entries grow past the size limit the least recently used ones are deleted, a hit refreshes
+ * the modification time of its entry so the time records the last use. An entry that can't be read back
+ * in full is treated as a miss and deleted, it is rebuilt from the source the same as a missing one.
+ */
+public class CompileCache {
+    // Bump whenever the atoms or the generated code change for the same source, so old entries stop matching
+    private static final int CACHE_VERSION = 5;
+    private static final String ATOMS_SUFFIX = ".atoms";
+    private static final String IMAGE_SUFFIX = ".image";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Temporary files this old are left over from a process that died while storing, no store takes this long
+    private static final Duration STALE_TEMPORARY = Duration.ofHours(1);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong size;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param directory the directory holding the entries, created if it doesn't exist
+     * @param maxBytes the size the entries are evicted down to once they grow past it
+     */
+    public CompileCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.size = new AtomicLong(entries().stream().mapToLong(Entry::bytes).sum());
+    }
+
+    /**
+     * Gets the atoms of a source from the cache, or compiles and caches them
+     * @param input the source file
+     * @param parallelScan whether the file is scanned in parallel chunks on a miss
+     * @param optimizationLevel the level the global optimizer runs at
+     * @return the atoms of the program
+     */
+    public AtomList compileAtoms(String input, boolean parallelScan, int optimizationLevel) throws IOException {
+        return compileAtoms(Files.readAllBytes(Path.of(input)), parallelScan, optimizationLevel);
+    }
+
+    /**
+     * Gets the machine image of a source from the cache, or compiles and caches it. A miss on the image
+     * still reuses cached atoms, they only depend on the optimization level
+     * @param input the source file
+     * @param parallelScan whether the file is scanned in parallel chunks on a miss
+     * @param optimizationLevel the level the global optimizer runs at
+     * @param localOptimization whether redundant loads and stores are removed
+     * @return the encoded memory of the program
+     */
+    public byte[] compileImage(String input, boolean parallelScan, int optimizationLevel, boolean localOptimization) throws IOException {
+        byte[] source = Files.readAllBytes(Path.of(input));
+        Path entry = entry(source, IMAGE_SUFFIX, optimizationLevel, localOptimization);
+
+        try {
+            byte[] image = Files.readAllBytes(entry);
+
+            // Images are the program memory followed by whole words of data, anything else was damaged
+            if (image.length >= Memory.PROGRAM_MEMORY_SIZE * Integer.BYTES && image.length % Integer.BYTES == 0) {
+                touch(entry);
+                hits.incrementAndGet();
+
+                return image;
+            }
+
+            discard(entry);
+        } catch (NoSuchFileException e) {
+            // Never stored or evicted
+        } catch (IOException e) {
+            discard(entry);
+        }
+
+        misses.incrementAndGet();
+
+        // Compiled from the bytes that were hashed, so the entry matches its key even if the file changes meanwhile
+        AtomList atoms = compileAtoms(source, parallelScan, optimizationLevel);
+        byte[] image = CompilerBackend.generate(atoms, localOptimization).encode();
+
+        store(entry, temporary -> Files.write(temporary, image));
+
+        return image;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the bytes the entries take up, as far as this cache knows of them
+     * @return the size of the entries
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache: %d hits, %d misses, %d evicted, %.1f KiB in %s".formatted(getHits(), getMisses(), getEvictions(), getSize() / 1024.0, directory);
+    }
+
+    private AtomList compileAtoms(byte[] source, boolean parallelScan, int optimizationLevel) throws IOException {
+        Path entry = entry(source, ATOMS_SUFFIX, optimizationLevel, false);
+
+        try (AtomReader atomReader = new AtomReader(entry.toString())) {
+            AtomList atoms = atomReader.readBinaryAtoms();
+
+            touch(entry);
+            hits.incrementAndGet();
+
+            return atoms;
+        } catch (NoSuchFileException e) {
+            // Never stored or evicted
+        } catch (IOException | RuntimeException e) {
+            // Truncated or damaged records fail as bounds errors as well as IOExceptions
+            discard(entry);
+        }
+
+        misses.incrementAndGet();
+
+        AtomList atoms = CompilerFrontend.compile(source, parallelScan, optimizationLevel);
+
+        store(entry, temporary -> {
+            try (AtomWriter atomWriter = new AtomWriter(temporary.toString())) {
+                atomWriter.writeAtoms(atoms);
+            }
+        });
+
+        return atoms;
+    }
+
+    private Path entry(byte[] source, String suffix, int optimizationLevel, boolean localOptimization) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        digest.update((byte) CACHE_VERSION);
+        digest.update((byte) AtomFormat.VERSION);
+        digest.update((byte) optimizationLevel);
+        digest.update((byte) (localOptimization ? 1 : 0));
+        digest.update(source);
+
+        return directory.resolve(HexFormat.of().formatHex(digest.digest()) + suffix);
+    }
+
+    // Writes the entry next to its final name and renames it, readers either see the whole entry or none
+    private void store(Path entry, EntryWriter writer) throws IOException {
+        Path temporary = Files.createTempFile(directory, entry.getFileName().toString(), TEMPORARY_SUFFIX);
+
+        try {
+            writer.write(temporary);
+
+            // Another process may have stored the same key since the miss, the entry replaced is no longer counted
+            long bytes = Files.size(temporary) - sizeOf(entry);
+
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (size.addAndGet(bytes) > maxBytes) {
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static long sizeOf(Path entry) throws IOException {
+        try {
+            return Files.size(entry);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    // Deletes an entry that couldn't be read back, the counter is left alone and corrected by the next eviction
+    private void discard(Path entry) {
+        try {
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            // Stays a miss every time, it is still evicted once it is the least recently used
+        }
+    }
+
+    private void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted by someone else in the meantime, the entry was still read in full
+        }
+    }
+
+    // Other processes may share the directory, so the real size is taken from the directory and not the counter
+    private synchronized void evict() throws IOException {
+        sweepTemporaries();
+
+        List<Entry> entries = entries();
+        long total = entries.stream().mapToLong(Entry::bytes).sum();
+
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+
+        for (int i = 0; i < entries.size() && total > maxBytes; i++) {
+            if (Files.deleteIfExists(entries.get(i).path())) {
+                evictions.incrementAndGet();
+            }
+
+            total -= entries.get(i).bytes();
+        }
+
+        size.set(total);
+    }
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+
+                if (!name.endsWith(ATOMS_SUFFIX) && !name.endsWith(IMAGE_SUFFIX)) {
+                    continue;
+                }
+
+                try {
+                    entries.add(new Entry(file, Files.size(file), Files.getLastModifiedTime(file)));
+                } catch (NoSuchFileException e) {
+                    // Evicted while listing
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return entries;
+    }
+
+    private void sweepTemporaries() throws IOException {
+        FileTime stale = FileTime.fromMillis(System.currentTimeMillis() - STALE_TEMPORARY.toMillis());
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (file.getFileName().toString().endsWith(TEMPORARY_SUFFIX)
+                            && Files.getLastModifiedTime(file).compareTo(stale) < 0) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Moved into place or swept by someone else while listing
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record Entry(Path path, long bytes, FileTime lastUsed) {}
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(Path temporary) throws IOException;
+    }
+}
@@ -0,0 +1,116 @@
+package compiler;
+
+import compiler.common.CommandLineArguments;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Takes the same arguments as CompilerMain and hands them to a running CompilerDaemon, printing what the
+ * daemon prints and exiting with its status. Without a daemon the command runs in this process instead, as
+ * do the daemon and watch modes, which never finish and would hold the daemon forever.
+ */
+public class CompilerClient {
+    // Options whose values are paths, the daemon runs in another working directory so they are made absolute
+    private static final Set<String> PATH_OPTIONS = Set.of("-i", "--input", "-o", "--output", "-a", "--atoms", "-c", "--cache");
+
+    public static void main(String[] args) throws Exception {
+        CommandLineArguments commandLineArguments = new CommandLineArguments(args);
+        Path socket = Path.of(commandLineArguments.getSocket());
+        SocketChannel channel = null;
+
+        // The daemon and watch modes never finish, so they always run here. A socket in a directory others
+        // can reach may belong to a daemon someone else planted there
+        if (commandLineArguments.getMode() != 5 && commandLineArguments.getMode() != 6 && Files.exists(socket) && CompilerDaemon.isPrivate(socket.toAbsolutePath().getParent())) {
+            try {
+                channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                // The daemon has stopped and left its socket file behind
+            }
+        }
+
+        if (channel == null) {
+            CompilerMain.main(args);
+            return;
+        }
+
+        System.exit(forward(channel, absolutePaths(args)));
+    }
+
+    private static int forward(SocketChannel channel, String[] args) throws IOException {
+        DataOutputStream request = new DataOutputStream(CompilerDaemon.outputStream(channel));
+        DataInputStream response = new DataInputStream(new BufferedInputStream(CompilerDaemon.inputStream(channel)));
+
+        request.writeInt(CompilerDaemon.PROTOCOL_VERSION);
+        request.writeInt(args.length);
+
+        for (String arg : args) {
+            request.writeUTF(arg);
+        }
+
+        // The virtual machine reads standard input when it steps through a program, so it goes to the daemon too
+        Thread input = new Thread(() -> {
+            try {
+                System.in.transferTo(request);
+                channel.shutdownOutput();
+            } catch (IOException e) {
+                // The daemon closed the connection, it doesn't need any more input
+            }
+        }, "stdin");
+
+        input.setDaemon(true);
+        input.start();
+
+        try {
+            while (true) {
+                byte kind = response.readByte();
+
+                if (kind == CompilerDaemon.EXIT) {
+                    int status = response.readInt();
+
+                    System.out.flush();
+                    System.err.flush();
+
+                    return status;
+                }
+
+                byte[] bytes = new byte[response.readInt()];
+                PrintStream stream = kind == CompilerDaemon.ERR ? System.err : System.out;
+
+                response.readFully(bytes);
+                stream.write(bytes);
+                stream.flush();
+            }
+        } catch (EOFException e) {
+            System.err.println("The compiler daemon closed the connection before the command finished");
+
+            return 1;
+        }
+    }
+
+    private static String[] absolutePaths(String[] args) {
+        String[] absolute = args.clone();
+
+        for (int i = 0; i < absolute.length - 1; i++) {
+            if (PATH_OPTIONS.contains(absolute[i]) && !absolute[i + 1].startsWith("-")) {
+                String value = absolute[++i];
+
+                // Batch manifests are named by an @ in front of their path
+                absolute[i] = value.startsWith("@")
+                        ? "@" + Path.of(value.substring(1)).toAbsolutePath()
+                        : Path.of(value).toAbsolutePath().toString();
+            }
+        }
+
+        return absolute;
+    }
+}
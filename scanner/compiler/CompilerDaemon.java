@@ -0,0 +1,280 @@
+package compiler;
+
+import compiler.common.CommandLineArguments;
+import compiler.frontend.ScannerProject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Keeps the compiler loaded and warmed up in one process and runs the command lines clients send it over a
+ * Unix domain socket, which saves every compilation the JVM startup and the time the compiler spends
+ * interpreted before the JIT compiles it.
+ * <pre>
+ * request   version (int), argument count (int), arguments (modified utf-8 strings),
+ *           then the client's standard input until it shuts down its side
+ * response  frames of kind (byte), OUT and ERR frames carry length (int) and that many bytes of output,
+ *           the final EXIT frame carries the exit status (int)
+ * </pre>
+ * Requests run one at a time, because the standard streams are redirected to the client for the whole run.
+ * A batch request still compiles its files in parallel. The daemon and watch modes never finish and would
+ * keep every other client waiting, so they are refused.
+ * <p>
+ * Whoever can connect can have the daemon write any file its owner may write, so the socket is only ever
+ * bound inside a directory no one else can enter. Clients check the same before connecting, another user
+ * can't get in to plant a daemon of their own on the path either.
+ */
+public class CompilerDaemon {
+    static final int PROTOCOL_VERSION = 1;
+    static final byte EXIT = 0;
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+    private static final Set<PosixFilePermission> PRIVATE_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private final Path socket;
+
+    /**
+     * @param socket the path of the socket to listen on, its directory is created private to the user if it is missing
+     */
+    public CompilerDaemon(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Listens for requests until the process is stopped
+     */
+    public void serve() throws IOException {
+        Path directory = socket.toAbsolutePath().getParent();
+
+        if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                // Private from the moment it exists, there is no window where another user can enter it
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PRIVATE_DIRECTORY));
+            } catch (UnsupportedOperationException e) {
+                Files.createDirectories(directory);
+            }
+        }
+
+        if (!isPrivate(directory)) {
+            throw new IllegalStateException("The socket directory %s must belong to %s and be closed to everyone else (chmod 700)"
+                    .formatted(directory, System.getProperty("user.name")));
+        }
+
+        if (isRunning(socket)) {
+            throw new IllegalStateException("A daemon is already listening on %s".formatted(socket));
+        }
+
+        // A socket file left behind by a daemon that was killed would make the bind fail
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException e) {
+                    // Nothing left to report to
+                }
+            }));
+
+            // Build the lexer tables before the first request instead of during it
+            ScannerProject.getLexer();
+            System.out.printf("Compiler daemon listening on %s%n", socket);
+
+            while (true) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException e) {
+                    System.err.printf("Request failed: %s%n", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a daemon accepts connections on a socket
+     * @param socket the path of the socket
+     * @return true if a daemon answered
+     */
+    public static boolean isRunning(Path socket) {
+        if (!Files.exists(socket)) {
+            return false;
+        }
+
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a directory belongs to the current user and no one else may enter, list or change it.
+     * Symbolic links aren't followed, someone else could point them anywhere
+     * @param directory the directory holding a socket
+     * @return true if only the current user can reach what is inside, always true off posix file systems
+     */
+    static boolean isPrivate(Path directory) {
+        try {
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                return false;
+            }
+
+            return Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).getName().equals(System.getProperty("user.name"))
+                    && PRIVATE_DIRECTORY.containsAll(Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS));
+        } catch (UnsupportedOperationException e) {
+            return true;  // Not a posix file system, there are no other users' permissions to check
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream request = new DataInputStream(new BufferedInputStream(inputStream(client)));
+        DataOutputStream response = new DataOutputStream(new BufferedOutputStream(outputStream(client)));
+        int version;
+
+        try {
+            version = request.readInt();
+        } catch (EOFException e) {
+            return;  // Closed without a request, as isRunning does when it probes for the daemon
+        }
+
+        if (version != PROTOCOL_VERSION) {
+            throw new IOException("Unsupported protocol version %d".formatted(version));
+        }
+
+        String[] args = new String[request.readInt()];
+
+        for (int i = 0; i < args.length; i++) {
+            args[i] = request.readUTF();
+        }
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        InputStream in = System.in;
+        PrintStream clientOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(response, OUT)), true);
+        PrintStream clientErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(response, ERR)), true);
+        int status;
+
+        System.setOut(clientOut);
+        System.setErr(clientErr);
+        System.setIn(request);
+
+        try {
+            if (runsForever(args)) {
+                System.err.println("The daemon and watch modes can't run in the compiler daemon");
+                status = 1;
+            } else {
+                status = CompilerMain.execute(args);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+            status = 1;
+        } finally {
+            clientOut.flush();
+            clientErr.flush();
+            System.setOut(out);
+            System.setErr(err);
+            System.setIn(in);
+        }
+
+        synchronized (response) {
+            response.writeByte(EXIT);
+            response.writeInt(status);
+            response.flush();
+        }
+    }
+
+    private static boolean runsForever(String[] args) {
+        try {
+            int mode = new CommandLineArguments(args).getMode();
+
+            return mode == 5 || mode == 6;
+        } catch (IllegalArgumentException e) {
+            return false;  // CompilerMain reports invalid arguments to the client itself
+        }
+    }
+
+    // Reads and writes go straight to the channel, unlike the streams of Channels they don't share a lock,
+    // so one thread can block reading while another writes
+    static InputStream inputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    static OutputStream outputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    // Wraps everything written to it in frames of one kind, output and errors share the response
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream response;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream response, byte kind) {
+            this.response = response;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (response) {
+                response.writeByte(kind);
+                response.writeInt(len);
+                response.write(b, off, len);
+                response.flush();
+            }
+        }
+    }
+}
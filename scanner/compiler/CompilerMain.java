@@ -1,17 +1,62 @@
 package compiler;
 
+import compiler.backend.CodeGenerator;
 import compiler.backend.CompilerBackend;
+import compiler.backend.Memory;
+import compiler.common.AtomList;
+import compiler.common.AtomStream;
 import compiler.common.CommandLineArguments;
+import compiler.common.OperandTable;
 import compiler.frontend.CompilerFrontend;
+import compiler.frontend.GlobalOptimizer;
+import compiler.frontend.PassManager;
+import compiler.frontend.SyntaxException;
 import compiler.vm.MiniVM;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
 public class CompilerMain {
+    private static final int STREAM_CAPACITY = 16;  // Batches of Atoms in Flight Between the Parser and the Code Generator
+
     public static void main(String[] args) throws Exception {
-        CommandLineArguments commandLineArguments = new CommandLineArguments(args);
+        int status = execute(args);
+
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs one command line without exiting the process, so a daemon can run many of them
+     * @param args the arguments of the command line
+     * @return the exit status of the command
+     */
+    public static int execute(String[] args) throws Exception {
+        try {
+            return run(new CommandLineArguments(args), args);
+        } catch (SyntaxException e) {
+            System.out.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int run(CommandLineArguments commandLineArguments, String[] args) throws Exception {
+        CompileCache cache = commandLineArguments.getCacheDirectory() == null ? null
+                : new CompileCache(Path.of(commandLineArguments.getCacheDirectory()), commandLineArguments.getCacheSize());
 
         switch (commandLineArguments.getMode()) {
             case 0:
-                CompilerFrontend.main(args);
+                if (cache == null) {
+                    CompilerFrontend.main(args);
+                } else {
+                    AtomList atoms = cache.compileAtoms(commandLineArguments.getInput(),
+                            commandLineArguments.getParallelScan(),
+                            commandLineArguments.getOptimizationLevel());
+
+                    CompilerFrontend.writeAtoms(atoms, commandLineArguments.getOutput(), commandLineArguments.getTextAtoms());
+                }
                 break;
             case 1:
                 CompilerBackend.main(args);
@@ -19,7 +64,149 @@ public class CompilerMain {
             case 2:
                 MiniVM.main(new String[] {commandLineArguments.getInput()});
                 break;
+            case 3:
+                runPipeline(commandLineArguments, cache);
+                break;
+            case 4:
+                return runBatch(commandLineArguments, cache);
+            case 5:
+                new CompilerDaemon(Path.of(commandLineArguments.getSocket())).serve();
+                break;
+            case 6:
+                new WatchCompiler(BatchCompiler.findSources(commandLineArguments.getInput(),
+                        commandLineArguments.getOutput() == null ? null : Path.of(commandLineArguments.getOutput())),
+                        commandLineArguments.getOutput() == null ? null : Path.of(commandLineArguments.getOutput()),
+                        commandLineArguments.getOptimizationLevel(),
+                        commandLineArguments.getDoLocalOptimization(),
+                        commandLineArguments.getRun()).watch();
+                break;
             default:
         }
+
+        return 0;
+    }
+
+    /**
+     * Compiles and runs a program in one process, the atoms and the memory image are handed from stage to stage
+     * in memory and only written to files when an output is given. Streaming always compiles, the cache
+     * only helps when the whole program is compiled before it runs. Passes only report what they did
+     * when they actually ran, not on a cache hit
+     * @param commandLineArguments the arguments of the run
+     * @param cache the cache of compiled programs, or null to always compile
+     */
+    private static void runPipeline(CommandLineArguments commandLineArguments, CompileCache cache) throws Exception {
+        byte[] memoryBytes;
+
+        if (commandLineArguments.getStreaming()) {
+            memoryBytes = streamPipeline(commandLineArguments).encode();
+        } else if (cache != null && commandLineArguments.getAtomsOutput() == null) {
+            memoryBytes = cache.compileImage(commandLineArguments.getInput(),
+                    commandLineArguments.getParallelScan(),
+                    commandLineArguments.getOptimizationLevel(),
+                    commandLineArguments.getDoLocalOptimization());
+        } else {
+            AtomList atoms;
+
+            if (cache != null) {
+                atoms = cache.compileAtoms(commandLineArguments.getInput(), commandLineArguments.getParallelScan(), commandLineArguments.getOptimizationLevel());
+            } else {
+                atoms = CompilerFrontend.parse(commandLineArguments.getInput(), commandLineArguments.getParallelScan());
+                PassManager.Report report = GlobalOptimizer.run(atoms, commandLineArguments.getOptimizationLevel());
+
+                if (commandLineArguments.getPassReport()) {
+                    report.print(System.out);
+                }
+            }
+
+            if (commandLineArguments.getAtomsOutput() != null) {
+                CompilerFrontend.writeAtoms(atoms, commandLineArguments.getAtomsOutput(), commandLineArguments.getTextAtoms());
+            }
+
+            memoryBytes = CompilerBackend.generate(atoms, commandLineArguments.getDoLocalOptimization()).encode();
+        }
+
+        if (commandLineArguments.getOutput() != null) {
+            CompilerBackend.writeMemory(memoryBytes, commandLineArguments.getOutput());
+        }
+
+        new MiniVM(memoryBytes).execute(true, true);
+    }
+
+    /**
+     * Compiles every source the input names into the output directory and prints a summary
+     * @param commandLineArguments the arguments of the run
+     * @param cache the cache of compiled programs, or null to compile every file
+     * @return 1 if any file failed to compile, otherwise 0
+     */
+    private static int runBatch(CommandLineArguments commandLineArguments, CompileCache cache) throws Exception {
+        BatchCompiler batchCompiler = new BatchCompiler(commandLineArguments.getJobs(),
+                commandLineArguments.getVirtualThreads(),
+                commandLineArguments.getOptimizationLevel(),
+                commandLineArguments.getDoLocalOptimization(),
+                cache);
+        BatchCompiler.Sources sources = BatchCompiler.findSources(commandLineArguments.getInput(), Path.of(commandLineArguments.getOutput()));
+
+        long start = System.nanoTime();
+        List<BatchCompiler.Result> results = batchCompiler.compile(sources, Path.of(commandLineArguments.getOutput()));
+
+        BatchCompiler.printSummary(results, System.nanoTime() - start);
+
+        if (cache != null) {
+            System.out.println(cache);
+        }
+
+        return results.stream().allMatch(BatchCompiler.Result::succeeded) ? 0 : 1;
+    }
+
+    /**
+     * Parses on a separate thread and generates code for each batch of atoms as soon as the parser publishes it
+     * @param commandLineArguments the arguments of the run
+     * @return the memory holding the program
+     */
+    private static Memory streamPipeline(CommandLineArguments commandLineArguments) throws Exception {
+        OperandTable operands = new OperandTable();
+        AtomStream stream = new AtomStream(STREAM_CAPACITY);
+        Memory memory = new Memory();
+        CodeGenerator codeGenerator = new CodeGenerator(memory);
+        AtomList atoms = commandLineArguments.getAtomsOutput() != null ? new AtomList(operands) : null;
+
+        codeGenerator.begin(operands);
+
+        Thread parser = new Thread(() -> {
+            try {
+                CompilerFrontend.stream(commandLineArguments.getInput(), commandLineArguments.getParallelScan(), operands, stream);
+                stream.end();
+            } catch (Throwable e) {
+                stream.fail(e);
+            }
+        }, "parser");
+
+        parser.start();
+
+        try {
+            for (AtomList batch = stream.take(); batch != null; batch = stream.take()) {
+                codeGenerator.translate(batch);
+
+                if (atoms != null) {
+                    atoms.append(batch);
+                }
+            }
+        } catch (ExecutionException e) {
+            // Report what went wrong in the parser as if parsing had run on this thread
+            parser.interrupt();
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (Throwable e) {
+            parser.interrupt();
+            throw e;
+        }
+
+        parser.join();
+        codeGenerator.finish(commandLineArguments.getDoLocalOptimization());
+
+        if (atoms != null) {
+            CompilerFrontend.writeAtoms(atoms, commandLineArguments.getAtomsOutput(), commandLineArguments.getTextAtoms());
+        }
+
+        return memory;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package compiler;
+
+import compiler.backend.CompilerBackend;
+import compiler.backend.Memory;
+import compiler.common.AtomList;
+import compiler.common.OperandTable;
+import compiler.frontend.CompilerFrontend;
+import compiler.vm.MiniVM;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Checks that the global optimizer keeps the meaning of programs. Every program is compiled at each
+ * optimization level and run on the virtual machine, the variables it leaves behind must be the same
+ * at every level. Compiling must also finish in time at every level, however long the program runs,
+ * so loops with a huge or no trip count check that the optimizer never runs them.
+ * <pre>
+ * java compiler.OptimizerCheck scanner/regression                the .txt programs of a directory
+ * java compiler.OptimizerCheck --generate 1 500                  500 random programs from seed 1
+ * </pre>
+ * Programs that don't halt within the machine's cycle limit unoptimized are only compiled, not compared.
+ * Variables without a memory slot read as 0, the value every variable starts with.
+ */
+public class OptimizerCheck {
+    private static final long COMPILE_LIMIT_MILLIS = 5000;
+    private static final int[] LEVELS = {0, 1, 2};
+
+    // Compilations run on daemon threads, one that never finishes is reported and left behind
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "compile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int compared = 0;
+    private int skipped = 0;
+    private final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        OptimizerCheck check = new OptimizerCheck();
+
+        if (args.length == 3 && args[0].equals("--generate")) {
+            ProgramGenerator generator = new ProgramGenerator(Long.parseLong(args[1]));
+
+            for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+                check.check("generated %s/%d".formatted(args[1], i), generator.program());
+            }
+        } else if (args.length == 1) {
+            try (Stream<Path> files = Files.list(Path.of(args[0]))) {
+                for (Path file : (Iterable<Path>) files.filter(file -> file.toString().endsWith(BatchCompiler.SOURCE_EXTENSION)).sorted()::iterator) {
+                    check.check(file.toString(), Files.readAllBytes(file));
+                }
+            }
+        } else {
+            System.out.println("Usage: OptimizerCheck <directory> | --generate <seed> <count>");
+            System.exit(2);
+        }
+
+        check.failures.forEach(System.out::println);
+        System.out.printf("%d compared, %d only compiled (no halt unoptimized), %d failed%n",
+                check.compared, check.skipped, check.failures.size());
+        System.exit(check.failures.isEmpty() ? 0 : 1);
+    }
+
+    private void check(String name, byte[] source) throws InterruptedException {
+        List<TreeMap<String, Float>> results = new ArrayList<>();
+
+        for (int level : LEVELS) {
+            Future<AtomList> compilation = executor.submit(() -> CompilerFrontend.compile(source, false, level));
+            AtomList atoms;
+
+            try {
+                atoms = compilation.get(COMPILE_LIMIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                compilation.cancel(true);
+                failures.add("FAILED %s: -O%d did not compile within %d ms".formatted(name, level, COMPILE_LIMIT_MILLIS));
+                return;
+            } catch (ExecutionException e) {
+                failures.add("FAILED %s: -O%d did not compile: %s".formatted(name, level, e.getCause()));
+                return;
+            }
+
+            results.add(run(atoms));
+        }
+
+        if (results.get(0) == null) {
+            skipped++;
+            return;
+        }
+
+        for (int i = 1; i < LEVELS.length; i++) {
+            if (!results.get(0).equals(results.get(i))) {
+                failures.add("FAILED %s: -O0 leaves %s, -O%d leaves %s%n%s".formatted(name, results.get(0), LEVELS[i], results.get(i),
+                        new String(source, StandardCharsets.UTF_8).indent(4)));
+                return;
+            }
+        }
+
+        compared++;
+    }
+
+    // The variables a program leaves behind by name, zeros left out, or null if it doesn't fit or doesn't halt
+    private static TreeMap<String, Float> run(AtomList atoms) {
+        Memory memory;
+        MiniVM vm;
+
+        try {
+            memory = CompilerBackend.generate(atoms, false);
+            vm = new MiniVM(memory.encode());
+            vm.execute(false, false);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            return null;
+        }
+
+        if (!vm.isHalted()) {
+            return null;
+        }
+
+        OperandTable operands = atoms.getOperands();
+        TreeMap<String, Float> variables = new TreeMap<>();
+
+        for (int id = 0; id < operands.size(); id++) {
+            if (operands.isConstant(id) || operands.labelKind(id) != null || !memory.isInMemory(id)) {
+                continue;
+            }
+
+            float value = vm.getFloat(memory.getMemoryAddress(id));
+
+            if (value != 0 || Float.isNaN(value)) {
+                variables.put(operands.name(id), value);
+            }
+        }
+
+        return variables;
+    }
+
+    // Random programs over a few variables and small constants, with branches and loops nested a few deep
+    private static class ProgramGenerator {
+        private static final String[] VARIABLES = {"a", "b", "cc", "x", "yy", "total", "n"};
+        private static final String[] COMPARISONS = {"<", ">", "==", "!=", "<=", ">="};
+
+        private final Random random;
+        private int count = 0;
+
+        ProgramGenerator(long seed) {
+            this.random = new Random(seed);
+        }
+
+        byte[] program() {
+            StringBuilder source = new StringBuilder();
+            boolean loops = count++ % 2 == 0;  // Every Other Program Has Loops, the Rest Always Halt
+            int statements = 1 + random.nextInt(8);
+
+            for (int i = 0; i < statements; i++) {
+                source.append(statement(0, loops)).append('\n');
+            }
+
+            return source.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        private String statement(int depth, boolean loops) {
+            return switch (depth > 3 ? 0 : random.nextInt(loops ? 8 : 6)) {
+                case 1 -> "%s = -%s;".formatted(variable(), variable());
+                case 2 -> "if (%s) {%s}".formatted(condition(), block(depth, loops)) + (random.nextBoolean() ? " else {%s}".formatted(block(depth, loops)) : "");
+                case 3 -> variable() + "++;";
+                case 4 -> "%s%s = %s %s %s;".formatted(random.nextBoolean() ? "int " : "", variable(), factor(), "+-*/".charAt(random.nextInt(4)), factor());
+                case 5 -> "if (%s) {%s} else if (%s) {%s}".formatted(condition(), block(depth, loops), condition(), block(depth, loops))
+                        + (random.nextBoolean() ? " else {%s}".formatted(block(depth, loops)) : "");
+                case 6 -> "while (%s) {%s}".formatted(condition(), block(depth, loops));
+                case 7 -> "for (int i = 0; i < %s; i++) {%s}".formatted(factor(), block(depth, loops));
+                default -> "%s = %s;".formatted(variable(), factor());
+            };
+        }
+
+        private String block(int depth, boolean loops) {
+            StringBuilder block = new StringBuilder();
+            int statements = random.nextInt(3);
+
+            for (int i = 0; i < statements; i++) {
+                block.append(statement(depth + 1, loops)).append('\n');
+            }
+
+            return block.toString();
+        }
+
+        private String condition() {
+            return "%s %s %s".formatted(factor(), COMPARISONS[random.nextInt(COMPARISONS.length)], factor());
+        }
+
+        private String factor() {
+            return random.nextInt(3) == 0 ? Integer.toString(random.nextInt(20)) : variable();
+        }
+
+        private String variable() {
+            return VARIABLES[random.nextInt(VARIABLES.length)];
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package compiler;
+
+import compiler.backend.CompilerBackend;
+import compiler.common.AtomList;
+import compiler.frontend.GlobalOptimizer;
+import compiler.frontend.IncrementalFrontend;
+import compiler.vm.MiniVM;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a set of sources and recompiles each one whenever it changes on disk. The tokens, atoms and image
+ * of every source stay in memory, so a change only re-scans and re-parses the statements it touches and
+ * the other sources aren't compiled again at all.
+ * Changes are debounced, every event of a file pushes its rebuild back, so a burst of saves or an editor
+ * writing a file in several steps leads to one rebuild once the file has been quiet for a moment.
+ */
+public class WatchCompiler {
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final BatchCompiler.Sources sources;
+    private final Path outputDirectory;
+    private final int optimizationLevel;
+    private final boolean localOptimization;
+    private final boolean run;
+    private final Map<Path, CompiledFile> compiled = new HashMap<>();
+    private final Map<Path, Long> pending = new LinkedHashMap<>();  // Files waiting for their rebuild, and when it is due
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * @param sources the sources to watch
+     * @param outputDirectory the directory images are written to, or null to keep them in memory only
+     * @param optimizationLevel the level the global optimizer runs at on every file
+     * @param localOptimization whether redundant loads and stores are removed in every file
+     * @param run whether a program runs on the virtual machine after each rebuild
+     */
+    public WatchCompiler(BatchCompiler.Sources sources, Path outputDirectory, int optimizationLevel, boolean localOptimization, boolean run) {
+        this.sources = sources;
+        this.outputDirectory = outputDirectory;
+        this.optimizationLevel = optimizationLevel;
+        this.localOptimization = localOptimization;
+        this.run = run;
+    }
+
+    /**
+     * Compiles every source, then rebuilds sources as they change until the thread is interrupted
+     */
+    public void watch() throws IOException, InterruptedException {
+        try (WatchService watchService = sources.base().getFileSystem().newWatchService()) {
+            if (sources.recursive()) {
+                register(watchService, sources.base());
+            } else {
+                for (Path file : sources.files()) {
+                    registerDirectory(watchService, file.getParent());
+                }
+            }
+
+            for (Path file : sources.files()) {
+                rebuild(file);
+            }
+
+            System.out.printf("Watching %d files for changes%n", compiled.size());
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(Math.max(0, nextDue() - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    collect(watchService, key);
+                }
+
+                rebuildDue();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Stopped from another thread
+        }
+    }
+
+    private void collect(WatchService watchService, WatchKey key) throws IOException {
+        Path directory = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, every file may have changed
+                compiled.keySet().forEach(this::schedule);
+                continue;
+            }
+
+            Path file = directory.resolve((Path) event.context());
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && sources.recursive() && Files.isDirectory(file)) {
+                // Files created together with the directory may already be in it before it is watched
+                register(watchService, file);
+
+                try (Stream<Path> files = Files.walk(file)) {
+                    files.filter(Files::isRegularFile).filter(sources.matcher()::matches).forEach(this::schedule);
+                }
+            } else if (sources.matcher().matches(file)) {
+                schedule(file);
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void schedule(Path file) {
+        pending.remove(file);
+        pending.put(file, System.currentTimeMillis() + DEBOUNCE_MILLIS);
+    }
+
+    private long nextDue() {
+        return pending.values().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
+    }
+
+    private void rebuildDue() {
+        long now = System.currentTimeMillis();
+        Path[] due = pending.entrySet().stream().filter(entry -> entry.getValue() <= now).map(Map.Entry::getKey).toArray(Path[]::new);
+
+        for (Path file : due) {
+            pending.remove(file);
+            rebuild(file);
+        }
+    }
+
+    private void rebuild(Path file) {
+        long start = System.nanoTime();
+        CompiledFile previous = compiled.get(file);
+        byte[] source;
+
+        try {
+            source = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            if (compiled.remove(file) != null) {
+                System.out.printf("Removed %s%n", file);
+            }
+            return;
+        } catch (IOException e) {
+            System.out.printf("FAILED %s: %s%n", file, e.getMessage());
+            return;
+        }
+
+        if (previous != null && Arrays.equals(previous.source, source)) {
+            return;  // Saved without changes
+        }
+
+        CompiledFile current = new CompiledFile();
+        current.source = source;
+
+        try {
+            current.frontend = previous != null && previous.frontend != null
+                    ? edit(previous.frontend, source)
+                    : new IncrementalFrontend(new String(source, StandardCharsets.UTF_8));
+
+            AtomList atoms = current.frontend.getAtoms();
+
+            GlobalOptimizer.run(atoms, optimizationLevel);
+
+            current.image = CompilerBackend.generate(atoms, localOptimization).encode();
+
+            if (outputDirectory != null) {
+                Path output = BatchCompiler.outputPath(sources.base(), file, outputDirectory);
+
+                if (output.getParent() != null) {
+                    Files.createDirectories(output.getParent());
+                }
+
+                CompilerBackend.writeMemory(current.image, output.toString());
+            }
+        } catch (Exception | OutOfMemoryError e) {
+            // A failed edit leaves the frontend at the last source that parsed, the next change is taken from there
+            current.frontend = previous != null ? previous.frontend : null;
+            current.image = previous != null ? previous.image : null;
+            compiled.put(file, current);
+            System.out.printf("FAILED %s: %s%n", file, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            return;
+        }
+
+        compiled.put(file, current);
+        System.out.printf("Compiled %s in %.2f ms%n", file, (System.nanoTime() - start) / 1e6);
+
+        if (run) {
+            new MiniVM(current.image).execute(true, false);
+        }
+    }
+
+    // Turns the difference between the frontend's source and the new one into a single edit of the bytes in between
+    // their common prefix and suffix, which is all an editor changes on a typical save
+    private static IncrementalFrontend edit(IncrementalFrontend frontend, byte[] source) throws IOException {
+        byte[] previous = frontend.getSource().getBytes(StandardCharsets.UTF_8);
+        int limit = Math.min(previous.length, source.length);
+        int prefix = 0;
+
+        while (prefix < limit && previous[prefix] == source[prefix]) {
+            prefix++;
+        }
+
+        int suffix = 0;
+
+        while (suffix < limit - prefix && previous[previous.length - 1 - suffix] == source[source.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        // Keep multi-byte characters whole, the inserted text is passed on as a string
+        while (prefix > 0 && prefix < source.length && (source[prefix] & 0xC0) == 0x80) {
+            prefix--;
+        }
+
+        while (suffix > 0 && (source[source.length - suffix] & 0xC0) == 0x80) {
+            suffix--;
+        }
+
+        String inserted = new String(source, prefix, source.length - prefix - suffix, StandardCharsets.UTF_8);
+        frontend.edit(prefix, previous.length - prefix - suffix, inserted);
+
+        return frontend;
+    }
+
+    private void register(WatchService watchService, Path root) throws IOException {
+        try (Stream<Path> tree = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) tree.filter(Files::isDirectory)::iterator) {
+                registerDirectory(watchService, directory);
+            }
+        }
+    }
+
+    private void registerDirectory(WatchService watchService, Path directory) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        directories.put(key, directory);
+    }
+
+    private static class CompiledFile {
+        private byte[] source;
+        private IncrementalFrontend frontend;  // At the last source that parsed, which may be older than source
+        private byte[] image;  // The last image that compiled, kept when a later change fails
+    }
+}
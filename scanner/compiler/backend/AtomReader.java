@@ -1,33 +1,131 @@
 package compiler.backend;
 
+import compiler.common.AtomFormat;
+import compiler.common.AtomList;
 import compiler.common.AtomOperation;
+import compiler.common.Comparison;
+import compiler.common.OperandTable;
 import compiler.common.Operation;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class AtomReader implements Closeable {
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Comparison[] COMPARISONS = Comparison.values();
 
-    private final BufferedReader bufferedReader;
+    private final FileChannel channel;
 
-    public AtomReader(String filename) throws FileNotFoundException {
-        this.bufferedReader = new BufferedReader(new FileReader(filename));
+    public AtomReader(String filename) throws IOException {
+        this.channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
     }
 
-    public List<AtomOperation> readAtoms() throws IOException {
-        List<AtomOperation> atoms = new ArrayList<>();
-        String line;
+    /**
+     * Reads the atoms of the file, binary files are recognized by their magic number and anything else is
+     * read as the text dump format
+     * @return the atoms of the file
+     */
+    public AtomList readAtoms() throws IOException {
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
 
-        while((line = bufferedReader.readLine()) != null) {
-            atoms.add(parseAtom(line));
+        if (file.limit() >= AtomFormat.HEADER_SIZE && file.getInt(0) == AtomFormat.MAGIC) {
+            return readBinary(file);
         }
 
-        return atoms;
+        return readText(file);
+    }
+
+    /**
+     * Reads the atoms of a binary file, for callers that only ever write binary files and must not mistake
+     * a damaged one for a text dump
+     * @return the atoms of the file
+     * @throws IOException if the file isn't a binary atom file or is damaged
+     */
+    public AtomList readBinaryAtoms() throws IOException {
+        ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (file.limit() < AtomFormat.HEADER_SIZE || file.getInt(0) != AtomFormat.MAGIC) {
+            throw new IOException("Not a binary atom file");
+        }
+
+        return readBinary(file);
     }
 
     public void close() throws IOException {
-        bufferedReader.close();
+        channel.close();
+    }
+
+    private AtomList readBinary(ByteBuffer file) throws IOException {
+        int version = file.getInt(4);
+
+        if (version != AtomFormat.VERSION) {
+            throw new IOException("Unsupported atom file version %d".formatted(version));
+        }
+
+        int operandCount = file.getInt(8);
+        int atomCount = file.getInt(12);
+        OperandTable operands = new OperandTable();
+        int[] ids = new int[operandCount];  // A label and a variable may be spelled the same, they share an id once read back
+        int position = AtomFormat.HEADER_SIZE;
+
+        for (int id = 0; id < operandCount; id++) {
+            int length = file.getInt(position);
+            byte[] name = new byte[length];
+
+            file.get(position + Integer.BYTES, name);
+            ids[id] = operands.intern(new String(name, StandardCharsets.US_ASCII));
+            position += Integer.BYTES + length;
+        }
+
+        if ((long) position + (long) atomCount * AtomFormat.RECORD_SIZE > file.limit()) {
+            throw new IOException("Atom file is truncated");
+        }
+
+        AtomList atoms = new AtomList(operands, atomCount);
+
+        // Records are decoded in place from the mapped file
+        for (int i = 0; i < atomCount; i++, position += AtomFormat.RECORD_SIZE) {
+            int op = file.get(position);
+            int cmp = file.get(position + 1);
+
+            if (op < AtomList.NONE || op >= OPERATIONS.length || cmp < AtomList.NONE || cmp >= COMPARISONS.length) {
+                throw new IOException("Invalid atom record %d".formatted(i));
+            }
+
+            atoms.add(op == AtomList.NONE ? null : OPERATIONS[op],
+                    operand(ids, file.getInt(position + 4)),
+                    operand(ids, file.getInt(position + 8)),
+                    operand(ids, file.getInt(position + 12)),
+                    cmp == AtomList.NONE ? null : COMPARISONS[cmp],
+                    operand(ids, file.getInt(position + 16)));
+        }
+
+        return atoms;
+    }
+
+    private static int operand(int[] ids, int id) throws IOException {
+        if (id == AtomList.NONE) {
+            return AtomList.NONE;
+        }
+
+        if (id < 0 || id >= ids.length) {
+            throw new IOException("Invalid operand id %d".formatted(id));
+        }
+
+        return ids[id];
+    }
+
+    private AtomList readText(ByteBuffer file) {
+        AtomList atoms = new AtomList(new OperandTable());
+
+        StandardCharsets.US_ASCII.decode(file).toString().lines()
+                .forEach(line -> atoms.add(parseAtom(line)));
+
+        return atoms;
     }
 
     private AtomOperation parseAtom(String line) {
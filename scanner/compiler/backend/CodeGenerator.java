@@ -1,15 +1,17 @@
 package compiler.backend;
 
-import compiler.common.AtomOperation;
+import compiler.common.AtomList;
+import compiler.common.Comparison;
+import compiler.common.OperandTable;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Objects;
+import java.util.Arrays;
 
 public class CodeGenerator {
-    private final HashMap<Integer, String> labelReferences = new HashMap<>();
-    private final HashMap<String, Integer> labelTable = new HashMap<>();
+    private int[] jumpLabels = new int[64];  // Label Id Each Jump Instruction Goes to, by Program Address
+    private int[] labelAddresses = unplaced(new int[64], 0);  // Program Address of Each Label, by Label Id, -1 Until Placed
     private final Memory memory;
+    private OperandTable operands;
+    private int zero;  // Id of the Constant 0 in the Operand Table
 
     public CodeGenerator(Memory memory) {
         this.memory = memory;
@@ -100,13 +102,37 @@ public class CodeGenerator {
      * Converts a list of atoms into machine code
      * @param atoms the atoms to convert
      */
-    public void generateMachineCode(List<AtomOperation> atoms, boolean optimizeFlag) {
+    public void generateMachineCode(AtomList atoms, boolean optimizeFlag) {
+        begin(atoms.getOperands());
+        translate(atoms);
+        finish(optimizeFlag);
+    }
+
+    /**
+     * Starts a program whose atoms are translated in batches as they arrive.
+     * Interns the operands the generator itself needs, so this has to run before another thread starts interning
+     * @param operands the operand table every batch of atoms uses
+     */
+    public void begin(OperandTable operands) {
+        this.operands = operands;
+        this.zero = operands.intern("0");
         memory.addProgramMemory(1);
+    }
 
-        for (AtomOperation atom : atoms) {
-            translateAtomToMachineCode(atom);
+    /**
+     * Converts the next batch of atoms of the program into machine code, jumps are resolved once the program is finished
+     * @param atoms the atoms to convert
+     */
+    public void translate(AtomList atoms) {
+        for (int i = 0; i < atoms.size(); i++) {
+            translateAtomToMachineCode(atoms, i);
         }
+    }
 
+    /**
+     * Ends the program and resolves the jumps to labels
+     */
+    public void finish(boolean optimizeFlag) {
         encodeInstruction(MachineOperation.HLT, 0, 0, 0);
         secondPass();
 
@@ -117,54 +143,55 @@ public class CodeGenerator {
 
     /**
      * Generates machine code given an atom
-     * @param atom the atom to translate into machine code
+     * @param atoms the atoms of the program
+     * @param index the index of the atom to translate into machine code
      */
-    private void translateAtomToMachineCode(AtomOperation atom) {
-        switch (atom.getOp()) {
+    private void translateAtomToMachineCode(AtomList atoms, int index) {
+        switch (atoms.getOp(index)) {
             case ADD:
-                encodeMathOperation(MachineOperation.ADD, atom.getLeft(), atom.getRight(), atom.getResult());
+                encodeMathOperation(MachineOperation.ADD, atoms.getLeft(index), atoms.getRight(index), atoms.getResult(index));
                 break;
             case SUB:
-                encodeMathOperation(MachineOperation.SUB, atom.getLeft(), atom.getRight(), atom.getResult());
+                encodeMathOperation(MachineOperation.SUB, atoms.getLeft(index), atoms.getRight(index), atoms.getResult(index));
                 break;
             case MUL:
-                encodeMathOperation(MachineOperation.MUL, atom.getLeft(), atom.getRight(), atom.getResult());
+                encodeMathOperation(MachineOperation.MUL, atoms.getLeft(index), atoms.getRight(index), atoms.getResult(index));
                 break;
             case DIV:
-                encodeMathOperation(MachineOperation.DIV, atom.getLeft(), atom.getRight(), atom.getResult());
+                encodeMathOperation(MachineOperation.DIV, atoms.getLeft(index), atoms.getRight(index), atoms.getResult(index));
                 break;
             case JMP:
                 // Encode an always true cmp to set the flag to true before jumping
-                encodeBooleanOperation("0", "0", "0");
+                encodeBooleanOperation(zero, zero, Comparison.ALWAYS);
                 // Set program counter (register 1) to memory address of the instruction to jump to
-                labelReferences.put(memory.getProgramMemorySize(), atom.getDest());
+                referenceLabel(atoms.getDest(index));
                 encodeInstruction(MachineOperation.JMP, 0, 1, 0);
                 break;
             case NEG:
-                encodeMathOperation(MachineOperation.SUB, "0", atom.getLeft(), atom.getResult());
+                encodeMathOperation(MachineOperation.SUB, zero, atoms.getLeft(index), atoms.getResult(index));
                 break;
             case LBL:
-                labelTable.put(atom.getDest(), memory.getProgramMemorySize());
+                placeLabel(atoms.getDest(index));
                 break;
             case TST:
-                encodeBooleanOperation(atom.getLeft(), atom.getRight(), atom.getCmp());
+                encodeBooleanOperation(atoms.getLeft(index), atoms.getRight(index), atoms.getCmp(index));
                 // Set program counter (register 1) to memory address of the instruction to jump to
-                labelReferences.put(memory.getProgramMemorySize(), atom.getDest());
+                referenceLabel(atoms.getDest(index));
                 encodeInstruction(MachineOperation.JMP, 0, 1, 0);
                 break;
             case MOV:
-                if (Objects.equals(atom.getLeft(), "0")) {
+                if (atoms.getLeft(index) == zero) {
                     // If setting a value to 0 -> CLR
                     encodeInstruction(MachineOperation.CLR, 0, 0, 0);
                 } else {
-                    storeOperationConstants(atom.getLeft(), null);
-                    encodeInstruction(MachineOperation.LOD, 0, 0, memory.getMemoryAddress(atom.getLeft()));
+                    storeOperationConstants(atoms.getLeft(index), AtomList.NONE);
+                    encodeInstruction(MachineOperation.LOD, 0, 0, address(atoms.getLeft(index)));
                 }
 
-                encodeInstruction(MachineOperation.STO, 0, 0, memory.getMemoryAddress(atom.getResult()));
+                encodeInstruction(MachineOperation.STO, 0, 0, address(atoms.getResult(index)));
                 break;
             default:
-                throw new UnsupportedOperationException("Unknown operation: " + atom.getOp());
+                throw new UnsupportedOperationException("Unknown operation: " + atoms.getOp(index));
         }
     }
 
@@ -184,11 +211,11 @@ public class CodeGenerator {
     /**
      * Encodes machine instructions for a math operation
      * @param operation the operation to perform
-     * @param left the left side of the operation
-     * @param right the right side of the operation
-     * @param result the symbol that the result is stored in
+     * @param left the operand id of the left side of the operation
+     * @param right the operand id of the right side of the operation
+     * @param result the operand id of the symbol that the result is stored in
      */
-    private void encodeMathOperation(MachineOperation operation, String left, String right, String result) {
+    private void encodeMathOperation(MachineOperation operation, int left, int right, int result) {
         if (operation != MachineOperation.ADD &&
                 operation != MachineOperation.SUB &&
                 operation != MachineOperation.MUL &&
@@ -197,38 +224,66 @@ public class CodeGenerator {
         }
 
         storeOperationConstants(left, right);
-        encodeInstruction(MachineOperation.LOD, 0, 0, memory.getMemoryAddress(left));
-        encodeInstruction(operation, 0, 0, memory.getMemoryAddress(right));
-        encodeInstruction(MachineOperation.STO, 0, 0, memory.getMemoryAddress(result));
+        encodeInstruction(MachineOperation.LOD, 0, 0, address(left));
+        encodeInstruction(operation, 0, 0, address(right));
+        encodeInstruction(MachineOperation.STO, 0, 0, address(result));
     }
 
     /**
      * Encodes machine instructions for a comparison
-     * @param left the left side of the comparison
-     * @param right the right side of the comparison
-     * @param cmp the code for the operation to perform
+     * @param left the operand id of the left side of the comparison
+     * @param right the operand id of the right side of the comparison
+     * @param cmp the comparison to perform
      */
-    private void encodeBooleanOperation(String left, String right, String cmp) {
-        int cmpInt = Integer.parseInt(cmp);
-
+    private void encodeBooleanOperation(int left, int right, Comparison cmp) {
         storeOperationConstants(left, right);
-        encodeInstruction(MachineOperation.LOD, 0, 0, memory.getMemoryAddress(left));
-        encodeInstruction(MachineOperation.CMP, cmpInt, 0, memory.getMemoryAddress(right));
+        encodeInstruction(MachineOperation.LOD, 0, 0, address(left));
+        encodeInstruction(MachineOperation.CMP, cmp.ordinal(), 0, address(right));
     }
 
     /**
-     * Stores constant values in an arbitrary location in memory
-     * @param left a constant to store
-     * @param right a constant to store
+     * Stores constant values in an arbitrary location in memory, each constant is only stored the first time it is used
+     * @param left the operand id of a constant to store
+     * @param right the operand id of a constant to store
      */
-    private void storeOperationConstants(String left, String right) {
-        if (left != null && Character.isDigit(left.charAt(0))) {
-            memory.putInMemory(left, Float.parseFloat(left));
+    private void storeOperationConstants(int left, int right) {
+        if (left != AtomList.NONE && operands.isConstant(left) && !memory.isInMemory(left)) {
+            memory.putInMemory(left, operands.floatValue(left));
+        }
+
+        if (right != AtomList.NONE && operands.isConstant(right) && !memory.isInMemory(right)) {
+            memory.putInMemory(right, operands.floatValue(right));
+        }
+    }
+
+    private void referenceLabel(int label) {  // The Jump Encoded Next Goes to the Label
+        int address = memory.getProgramMemorySize();
+
+        if (address >= jumpLabels.length) {
+            jumpLabels = Arrays.copyOf(jumpLabels, Math.max(jumpLabels.length * 2, address + 1));
         }
 
-        if (right != null && Character.isDigit(right.charAt(0))) {
-            memory.putInMemory(right, Float.parseFloat(right));
+        jumpLabels[address] = label;
+    }
+
+    private void placeLabel(int label) {  // The Label Marks the Instruction Encoded Next
+        if (label >= labelAddresses.length) {
+            int length = labelAddresses.length;
+
+            labelAddresses = unplaced(Arrays.copyOf(labelAddresses, Math.max(length * 2, label + 1)), length);
         }
+
+        labelAddresses[label] = memory.getProgramMemorySize();
+    }
+
+    private static int[] unplaced(int[] addresses, int from) {  // Marks the Labels From an Id on as Not Placed -> Returns the Addresses
+        Arrays.fill(addresses, from, addresses.length, -1);
+
+        return addresses;
+    }
+
+    private int address(int operand) {  // Empty Operands Share the Address of the Empty Symbol
+        return memory.getMemoryAddress(operand);
     }
 
     public void secondPass() {
@@ -238,8 +293,14 @@ public class CodeGenerator {
             MachineOperation operation = MachineOperation.values()[(instruction >> 28) & 0xF];
 
             if (operation == MachineOperation.JMP) {
-                String label = labelReferences.get(i);
-                int address = labelTable.get(label) - 1;
+                int label = jumpLabels[i];
+                int placed = label < labelAddresses.length ? labelAddresses[label] : -1;
+
+                if (placed < 0) {
+                    throw new IllegalStateException("Label %s is never placed".formatted(operands.name(label)));
+                }
+
+                int address = placed - 1;
                 instruction = (instruction & 0xFFF00000) | (address & 0xFFFFF);
                 memory.replaceProgramMemory(i, instruction);
             }
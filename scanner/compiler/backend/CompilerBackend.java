@@ -1,26 +1,41 @@
 package compiler.backend;
 
-import compiler.common.AtomOperation;
+import compiler.common.AtomList;
 import compiler.common.CommandLineArguments;
 
 import java.io.FileOutputStream;
-import java.util.List;
+import java.io.IOException;
 
 public class CompilerBackend {
     public static void main(String[] args) throws Exception {
         CommandLineArguments commandLineArguments = new CommandLineArguments(args);
 
         AtomReader atomReader = new AtomReader(commandLineArguments.getInput());
-        List<AtomOperation> atoms = atomReader.readAtoms();
+        AtomList atoms = atomReader.readAtoms();
         atomReader.close();
 
+        Memory memory = generate(atoms, commandLineArguments.getDoLocalOptimization());
+
+        writeMemory(memory.encode(), commandLineArguments.getOutput());
+    }
+
+    /**
+     * Generates the machine's initial memory for a program
+     * @param atoms the atoms of the program
+     * @param localOptimization whether redundant loads and stores are removed
+     * @return the memory holding the program and its variables and constants
+     */
+    public static Memory generate(AtomList atoms, boolean localOptimization) {
         Memory memory = new Memory();
         CodeGenerator codeGenerator = new CodeGenerator(memory);
 
-        codeGenerator.generateMachineCode(atoms, commandLineArguments.getDoLocalOptimization());
-        byte[] memoryBytes = memory.encode();
+        codeGenerator.generateMachineCode(atoms, localOptimization);
+
+        return memory;
+    }
 
-        FileOutputStream writer = new FileOutputStream(commandLineArguments.getOutput());
+    public static void writeMemory(byte[] memoryBytes, String output) throws IOException {
+        FileOutputStream writer = new FileOutputStream(output);
         writer.write(memoryBytes);
         writer.close();
     }
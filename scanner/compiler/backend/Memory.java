@@ -1,39 +1,69 @@
 package compiler.backend;
 
+import compiler.common.AtomList;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class Memory {
     private static final long MAX_MEMORY_SIZE = (long) Math.pow(2, 20) - 1;
-    private static final int PROGRAM_MEMORY_SIZE = 512;
+    public static final int PROGRAM_MEMORY_SIZE = 512;
 
     private final int[] programMemory = new int[PROGRAM_MEMORY_SIZE];
     private int programMemoryIndex = 0;
     private final ArrayList<Float> generalMemory = new ArrayList<>();
-    private final HashMap<String, Integer> memoryMap = new HashMap<>();
+    private int[] symbolIndexes = newSymbolIndexes(64);  // General Memory Index of Each Operand Id, -1 Until it is Stored
+    private int emptySymbolIndex = -1;  // Where Empty Operands Point
 
     /**
      * Inserts a value into general memory
-     * @param symbol the symbol representing the value
+     * @param symbol the operand id representing the value, AtomList.NONE for the empty operand
      * @param value the value to insert
      */
-    public void putInMemory(String symbol, float value) {
-        memoryMap.put(symbol, addGeneralMemory(value));
+    public void putInMemory(int symbol, float value) {
+        int index = addGeneralMemory(value);
+
+        if (symbol == AtomList.NONE) {
+            emptySymbolIndex = index;
+            return;
+        }
+
+        if (symbol >= symbolIndexes.length) {
+            int length = symbolIndexes.length;
+
+            symbolIndexes = Arrays.copyOf(symbolIndexes, Math.max(length * 2, symbol + 1));
+            Arrays.fill(symbolIndexes, length, symbolIndexes.length, -1);
+        }
+
+        symbolIndexes[symbol] = index;
+    }
+
+    /**
+     * Checks whether a symbol already has a place in general memory
+     * @param symbol the operand id of the symbol
+     * @return true if the symbol was stored
+     */
+    public boolean isInMemory(int symbol) {
+        if (symbol == AtomList.NONE) {
+            return emptySymbolIndex >= 0;
+        }
+
+        return symbol < symbolIndexes.length && symbolIndexes[symbol] >= 0;
     }
 
     /**
      * Gets the memory address of a symbol
-     * @param symbol the symbol to get the address of -> variable
+     * @param symbol the operand id of the symbol to get the address of -> variable
      * @return the memory address the symbol is stored at
      */
-    public int getMemoryAddress(String symbol) {
-        if(!memoryMap.containsKey(symbol)) {
+    public int getMemoryAddress(int symbol) {
+        if(!isInMemory(symbol)) {
             putInMemory(symbol, 0);
         }
 
-        return memoryMap.get(symbol) + PROGRAM_MEMORY_SIZE;
+        return (symbol == AtomList.NONE ? emptySymbolIndex : symbolIndexes[symbol]) + PROGRAM_MEMORY_SIZE;
     }
 
     public void replaceProgramMemory(int address, int value) {
@@ -83,6 +113,14 @@ public class Memory {
         this.programMemoryIndex = size;
     }
 
+    private static int[] newSymbolIndexes(int length) {
+        int[] indexes = new int[length];
+
+        Arrays.fill(indexes, -1);
+
+        return indexes;
+    }
+
     /**
      * Encodes the entirety of memory into a byte array
      * @return a byte array representing the machine's initial memory
@@ -0,0 +1,21 @@
+package compiler.common;
+
+/**
+ * Layout of the binary atom file the frontend hands to the backend. All values are big endian.
+ * <pre>
+ * header    magic (int), version (int), operand count (int), atom count (int)
+ * operands  for each operand in id order: length (int), ascii text (length bytes)
+ * atoms     for each atom one RECORD_SIZE record: op (byte), cmp (byte), 2 bytes padding,
+ *           left (int), right (int), result (int), dest (int)
+ * </pre>
+ * Missing fields are stored as AtomList.NONE, in both the op and cmp bytes and the operand ids.
+ */
+public final class AtomFormat {
+    public static final int MAGIC = 0x41544F4D;  // "ATOM"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 20;
+
+    private AtomFormat() {
+    }
+}
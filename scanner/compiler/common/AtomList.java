@@ -0,0 +1,265 @@
+package compiler.common;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The atoms of a program stored as parallel primitive arrays, one slot per field.
+ * Operations and comparisons are stored by ordinal, operands and labels by their id in an OperandTable.
+ * Fields the atom doesn't have or leaves empty are NONE.
+ */
+public class AtomList {
+    public static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final OperandTable operands;
+    private byte[] ops = new byte[0];
+    private byte[] cmps = new byte[0];
+    private int[] lefts = new int[0];
+    private int[] rights = new int[0];
+    private int[] results = new int[0];
+    private int[] dests = new int[0];
+    private int size = 0;
+
+    public AtomList(OperandTable operands) {
+        this(operands, INITIAL_CAPACITY);
+    }
+
+    public AtomList(OperandTable operands, int capacity) {
+        this.operands = operands;
+        grow(Math.max(capacity, 1));
+    }
+
+    /**
+     * Adds an atom to the end of the list
+     * @param op the operation, or null if it isn't known yet
+     * @param left the id of the left operand
+     * @param right the id of the right operand
+     * @param result the id of the result
+     * @param cmp the comparison of a test, or null
+     * @param dest the id of the label
+     * @return the index of the new atom
+     */
+    public int add(Operation op, int left, int right, int result, Comparison cmp, int dest) {
+        if (size == ops.length) {
+            grow(size * 2);
+        }
+
+        ops[size] = (byte) (op == null ? NONE : op.ordinal());
+        cmps[size] = (byte) (cmp == null ? NONE : cmp.ordinal());
+        lefts[size] = left;
+        rights[size] = right;
+        results[size] = result;
+        dests[size] = dest;
+
+        return size++;
+    }
+
+    /**
+     * Adds an atom given in text form, interning its operands, empty fields become NONE
+     * @param atom the atom to add
+     * @return the index of the new atom
+     */
+    public int add(AtomOperation atom) {
+        return add(atom.getOp(),
+                intern(atom.getLeft()),
+                intern(atom.getRight()),
+                intern(atom.getResult()),
+                atom.getCmp() == null || atom.getCmp().isEmpty() ? null : Comparison.of(Integer.parseInt(atom.getCmp())),
+                intern(atom.getDest()));
+    }
+
+    /**
+     * Adds the atoms of another list to the end of this one
+     * @param other the atoms to add, if they use a different operand table their operands are interned again
+     */
+    public void append(AtomList other) {
+        if (other.operands != operands) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.get(i));
+            }
+
+            return;
+        }
+
+        if (size + other.size > ops.length) {
+            grow(Math.max(ops.length * 2, size + other.size));
+        }
+
+        System.arraycopy(other.ops, 0, ops, size, other.size);
+        System.arraycopy(other.cmps, 0, cmps, size, other.size);
+        System.arraycopy(other.lefts, 0, lefts, size, other.size);
+        System.arraycopy(other.rights, 0, rights, size, other.size);
+        System.arraycopy(other.results, 0, results, size, other.size);
+        System.arraycopy(other.dests, 0, dests, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Removes the atoms from an index to the end of the list
+     * @param from the index of the first atom to remove
+     * @return the removed atoms, sharing this list's operand table
+     */
+    public AtomList cut(int from) {
+        AtomList removed = new AtomList(operands);
+
+        for (int i = from; i < size; i++) {
+            removed.add(getOp(i), lefts[i], rights[i], results[i], getCmp(i), dests[i]);
+        }
+
+        size = from;
+
+        return removed;
+    }
+
+    /**
+     * Removes an atom, shifting the atoms after it down by one
+     * @param index the index of the atom to remove
+     */
+    public void remove(int index) {
+        int moved = size - index - 1;
+
+        System.arraycopy(ops, index + 1, ops, index, moved);
+        System.arraycopy(cmps, index + 1, cmps, index, moved);
+        System.arraycopy(lefts, index + 1, lefts, index, moved);
+        System.arraycopy(rights, index + 1, rights, index, moved);
+        System.arraycopy(results, index + 1, results, index, moved);
+        System.arraycopy(dests, index + 1, dests, index, moved);
+        size--;
+    }
+
+    /**
+     * Removes many atoms in one sweep, every kept atom moves at most once no matter how many are removed
+     * @param removed the indexes of the atoms to remove
+     * @return the number of atoms removed
+     */
+    public int removeAll(BitSet removed) {
+        int first = removed.nextSetBit(0);
+
+        if (first < 0 || first >= size) {
+            return 0;
+        }
+
+        int kept = first;
+
+        for (int i = removed.nextClearBit(first); i < size; i = removed.nextClearBit(i + 1)) {
+            ops[kept] = ops[i];
+            cmps[kept] = cmps[i];
+            lefts[kept] = lefts[i];
+            rights[kept] = rights[i];
+            results[kept] = results[i];
+            dests[kept] = dests[i];
+            kept++;
+        }
+
+        int count = size - kept;
+        size = kept;
+
+        return count;
+    }
+
+    /**
+     * Gets an atom in text form, meant for dumps and debugging rather than passes
+     * @param index the index of the atom
+     * @return a new atom holding the text of the fields its operation has, missing operands are empty
+     */
+    public AtomOperation get(int index) {
+        Operation op = getOp(index);
+        Comparison cmp = getCmp(index);
+
+        return switch (op) {
+            case ADD, SUB, MUL, DIV, NEG, MOV ->
+                    new AtomOperation(op, name(lefts[index]), name(rights[index]), name(results[index]), null, null);
+            case TST, JMP, LBL ->
+                    new AtomOperation(op, name(lefts[index]), name(rights[index]), name(results[index]),
+                            cmp == null ? "" : Integer.toString(cmp.ordinal()), name(dests[index]));
+        };
+    }
+
+    public Operation getOp(int index) {
+        return ops[index] == NONE ? null : OPERATIONS[ops[index]];
+    }
+
+    public void setOp(int index, Operation op) {
+        ops[index] = (byte) (op == null ? NONE : op.ordinal());
+    }
+
+    public Comparison getCmp(int index) {
+        return cmps[index] == NONE ? null : Comparison.of(cmps[index]);
+    }
+
+    public void setCmp(int index, Comparison cmp) {
+        cmps[index] = (byte) (cmp == null ? NONE : cmp.ordinal());
+    }
+
+    public int getLeft(int index) {
+        return lefts[index];
+    }
+
+    public void setLeft(int index, int left) {
+        lefts[index] = left;
+    }
+
+    public int getRight(int index) {
+        return rights[index];
+    }
+
+    public void setRight(int index, int right) {
+        rights[index] = right;
+    }
+
+    public int getResult(int index) {
+        return results[index];
+    }
+
+    public void setResult(int index, int result) {
+        results[index] = result;
+    }
+
+    public int getDest(int index) {
+        return dests[index];
+    }
+
+    public void setDest(int index, int dest) {
+        dests[index] = dest;
+    }
+
+    public OperandTable getOperands() {
+        return operands;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the text form of an atom, the same as the atom's toString
+     * @param index the index of the atom
+     * @return the atom as a line of the text atom format
+     */
+    public String toString(int index) {
+        return get(index).toString();
+    }
+
+    private int intern(String name) {
+        return name == null || name.isEmpty() ? NONE : operands.intern(name);
+    }
+
+    private String name(int id) {
+        return id == NONE ? "" : operands.name(id);
+    }
+
+    private void grow(int capacity) {
+        ops = Arrays.copyOf(ops, capacity);
+        cmps = Arrays.copyOf(cmps, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        results = Arrays.copyOf(results, capacity);
+        dests = Arrays.copyOf(dests, capacity);
+    }
+}
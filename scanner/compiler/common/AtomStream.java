@@ -0,0 +1,79 @@
+package compiler.common;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue of atom batches between a thread that parses and a thread that generates code.
+ * The producer blocks while the queue is full, so only a few batches are in memory at a time.
+ */
+public class AtomStream implements Consumer<AtomList> {
+    private static final AtomList END = new AtomList(new OperandTable(), 1);
+
+    private final BlockingQueue<AtomList> queue;
+    private volatile Throwable failure;
+
+    /**
+     * @param capacity the number of batches the queue holds before the producer blocks
+     */
+    public AtomStream(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Publishes a batch of atoms, blocking while the queue is full
+     * @param atoms the atoms, which the producer must not change afterwards
+     * @throws CancellationException if the producer is interrupted because the consumer gave up
+     */
+    @Override
+    public void accept(AtomList atoms) {
+        try {
+            queue.put(atoms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Atom stream was abandoned");
+        }
+    }
+
+    /**
+     * Marks the end of the atoms
+     */
+    public void end() {
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ends the atoms because the producer failed, the consumer gets the failure once it reaches the end
+     * @param failure the reason the producer failed
+     */
+    public void fail(Throwable failure) {
+        this.failure = failure;
+        end();
+    }
+
+    /**
+     * Takes the next batch of atoms, blocking until one is published
+     * @return the next batch, or null once the producer ended the stream
+     * @throws ExecutionException if the producer failed
+     */
+    public AtomList take() throws InterruptedException, ExecutionException {
+        AtomList atoms = queue.take();
+
+        if (atoms != END) {
+            return atoms;
+        }
+
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+
+        return null;
+    }
+}
@@ -1,12 +1,26 @@
 package compiler.common;
 
+import java.nio.file.Path;
+
 public class CommandLineArguments {
 
     private String input;
     private String output;
+    private String atomsOutput;
+    private String cacheDirectory;
+    private String socket = Path.of(System.getProperty("java.io.tmpdir"), "compiler-%s".formatted(System.getProperty("user.name")), "daemon.sock").toString();
+    private long cacheSize = 256L * 1024 * 1024;
     private int mode;
     private boolean doGlobalOptimization;
+    private int optimizationLevel = -1;  // Unset Unless an -O Option is Given
+    private boolean passReport;
     private boolean doLocalOptimization;
+    private boolean parallelScan;
+    private boolean textAtoms;
+    private boolean streaming;
+    private boolean run;
+    private boolean virtualThreads;
+    private int jobs = Runtime.getRuntime().availableProcessors();
 
     public CommandLineArguments(String[] args) {
         this.parseArguments(args);
@@ -17,13 +31,31 @@ public class CommandLineArguments {
         for(int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "-g", "--global" -> doGlobalOptimization = true;
+                case "-O0", "-O1", "-O2" -> optimizationLevel = args[i].charAt(2) - '0';
+                case "--pass-report" -> passReport = true;
                 case "-l", "--local" -> doLocalOptimization = true;
+                case "-p", "--parallel" -> parallelScan = true;
+                case "-t", "--text" -> textAtoms = true;
+                case "-s", "--stream" -> streaming = true;
+                case "--virtual" -> virtualThreads = true;
+                case "-r", "--run" -> run = true;
+                case "-j", "--jobs" -> {
+                    if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
+                        try {
+                            jobs = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid number of jobs. Jobs must be a positive number");
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
+                    }
+                }
                 case "-m", "--mode" -> {
                     if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
                         try {
                             mode = Integer.parseInt(args[i + 1]);
                         } catch (NumberFormatException e) {
-                            throw new IllegalArgumentException("Invalid mode. Mode must be 0, 1, or 2");
+                            throw new IllegalArgumentException("Invalid mode. Mode must be 0, 1, 2, 3, 4, 5, or 6");
                         }
                     } else {
                         throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
@@ -43,21 +75,70 @@ public class CommandLineArguments {
                         throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
                     }
                 }
+                case "-c", "--cache" -> {
+                    if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
+                        cacheDirectory = args[++i];
+                    } else {
+                        throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
+                    }
+                }
+                case "--socket" -> {
+                    if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
+                        socket = args[++i];
+                    } else {
+                        throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
+                    }
+                }
+                case "--cache-size" -> {
+                    if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
+                        try {
+                            cacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid cache size. Cache size must be a number of MiB");
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
+                    }
+                }
+                case "-a", "--atoms" -> {
+                    if (i < args.length - 1 && !args[i + 1].startsWith("-")) {
+                        atomsOutput = args[++i];
+                    } else {
+                        throw new IllegalArgumentException("Missing value for option %s".formatted(args[i]));
+                    }
+                }
+                default -> {
+                    if (args[i].startsWith("-O")) {
+                        throw new IllegalArgumentException("Invalid optimization level. Level must be -O0, -O1, or -O2");
+                    }
+                }
             }
         }
     }
 
     private void validateArguments() {
-        if(input == null) {
+        if(input == null && mode != 5) {
             throw new IllegalArgumentException("Missing argument: input");
         }
 
-        if(mode != 2 && output == null) {
+        if(mode != 2 && mode != 3 && mode != 5 && mode != 6 && output == null) {
             throw new IllegalArgumentException("Missing argument: output");
         }
 
-        if(mode < 0 || mode > 2) {
-            throw new IllegalArgumentException("Invalid mode. Mode must be 0, 1, or 2");
+        if(streaming && (optimizationLevel > 0 || (optimizationLevel < 0 && doGlobalOptimization))) {  // Fields, Not Getters, While the Constructor is Running
+            throw new IllegalArgumentException("Streaming can't be combined with global optimization, which needs the whole program");
+        }
+
+        if(cacheSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size. Cache size must be a number of MiB");
+        }
+
+        if(jobs < 1) {
+            throw new IllegalArgumentException("Invalid number of jobs. Jobs must be a positive number");
+        }
+
+        if(mode < 0 || mode > 6) {
+            throw new IllegalArgumentException("Invalid mode. Mode must be 0, 1, 2, 3, 4, 5, or 6");
         }
     }
 
@@ -69,15 +150,67 @@ public class CommandLineArguments {
         return output;
     }
 
+    public String getAtomsOutput() {  // Where the Pipeline Mode Writes its Atoms, Null if They Stay in Memory
+        return atomsOutput;
+    }
+
+    public String getCacheDirectory() {  // Where Compiled Atoms and Images are Cached, Null to Always Compile
+        return cacheDirectory;
+    }
+
+    public long getCacheSize() {  // Bytes the Cache is Evicted Down to
+        return cacheSize;
+    }
+
+    public String getSocket() {  // The Unix Domain Socket the Daemon Listens on and the Client Connects to, Inside a Directory Only its Owner Can Enter
+        return socket;
+    }
+
     public int getMode() {
         return mode;
     }
 
     public boolean getDoGlobalOptimization() {
-        return doGlobalOptimization;
+        return getOptimizationLevel() > 0;
+    }
+
+    public int getOptimizationLevel() {  // -g Without an -O Option Means -O2
+        if (optimizationLevel >= 0) {
+            return optimizationLevel;
+        }
+
+        return doGlobalOptimization ? 2 : 0;
+    }
+
+    public boolean getPassReport() {  // Print the Time and Effect of Every Optimization Pass
+        return passReport;
     }
 
     public boolean getDoLocalOptimization() {
         return doLocalOptimization;
     }
+
+    public boolean getParallelScan() {
+        return parallelScan;
+    }
+
+    public boolean getStreaming() {  // The Pipeline Mode Generates Code on Another Thread While Parsing Goes On
+        return streaming;
+    }
+
+    public int getJobs() {  // Files the Batch Mode Compiles at Once
+        return jobs;
+    }
+
+    public boolean getVirtualThreads() {  // The Batch Mode Compiles Each File on its Own Virtual Thread
+        return virtualThreads;
+    }
+
+    public boolean getRun() {  // The Watch Mode Runs Each Program on the Virtual Machine After it is Rebuilt
+        return run;
+    }
+
+    public boolean getTextAtoms() {  // Atoms are Written in the Readable Text Format Instead of Binary
+        return textAtoms;
+    }
 }
@@ -0,0 +1,29 @@
+package compiler.common;
+
+public enum Comparison {  // Ordinals are the Cmp Codes of the Atoms and the Machine
+    ALWAYS,
+    NOT_EQUAL,
+    GREATER_THAN_OR_EQUAL,
+    LESS_THAN_OR_EQUAL,
+    GREATER_THAN,
+    LESS_THAN,
+    EQUAL;
+
+    private static final Comparison[] CODES = values();
+
+    public static Comparison of(int code) {
+        return CODES[code];
+    }
+
+    public boolean test(double left, double right) {
+        return switch (this) {
+            case ALWAYS -> true;
+            case NOT_EQUAL -> left != right;
+            case GREATER_THAN_OR_EQUAL -> left >= right;
+            case LESS_THAN_OR_EQUAL -> left <= right;
+            case GREATER_THAN -> left > right;
+            case LESS_THAN -> left < right;
+            case EQUAL -> left == right;
+        };
+    }
+}
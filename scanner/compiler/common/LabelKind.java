@@ -0,0 +1,20 @@
+package compiler.common;
+
+public enum LabelKind {  // What a Label Marks, the Prefix is How the Label is Spelled in Atom Files
+    BEFORE_WHILE("before_while"),
+    AFTER_WHILE("after_while"),
+    BEFORE_FOR("before_for"),
+    AFTER_FOR("after_for"),
+    AFTER_IF("after_if"),
+    BEFORE_ELSE("before_else");
+
+    private final String prefix;
+
+    LabelKind(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+}
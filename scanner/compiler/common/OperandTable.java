@@ -0,0 +1,139 @@
+package compiler.common;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Interns the operands and labels of atoms, so atoms only hold small integer ids.
+ * Constants are parsed once when they are interned, passes read their value instead of the text.
+ * Labels the parser generates know their kind and their partner, the other label of the same block,
+ * so passes never look at their text. They are never shared with an operand of the same spelling.
+ * Only one thread may intern. Other threads may read the ids they were handed, for example through a queue,
+ * while that thread keeps interning: the arrays are replaced through volatile fields when they grow.
+ */
+public class OperandTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    private volatile boolean[] constants = new boolean[INITIAL_CAPACITY];
+    private volatile double[] values = new double[INITIAL_CAPACITY];
+    private volatile float[] floatValues = new float[INITIAL_CAPACITY];
+    private volatile LabelKind[] labelKinds = new LabelKind[INITIAL_CAPACITY];
+    private volatile int[] partners = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Interns the text of an operand or label
+     * @param name the text as it appears in the atom
+     * @return the id of the operand, ids are dense and start at 0
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+
+        if (id != null) {
+            return id;
+        }
+
+        id = add(name);
+
+        // Operands starting with a digit are numbers, everything else names a variable
+        if (!name.isEmpty() && Character.isDigit(name.charAt(0))) {
+            constants[id] = true;
+            values[id] = Double.parseDouble(name);
+            floatValues[id] = Float.parseFloat(name);
+        }
+
+        ids.put(name, id);
+
+        return id;
+    }
+
+    /**
+     * Adds a new label, which isn't looked up by its text so a variable spelled the same stays apart
+     * @param kind what the label marks
+     * @param number the number that keeps the text of the label unique
+     * @return the id of the label
+     */
+    public int internLabel(LabelKind kind, int number) {
+        int id = add("%s_%d".formatted(kind.getPrefix(), number));
+
+        labelKinds[id] = kind;
+
+        return id;
+    }
+
+    /**
+     * Links the two labels of a block, a loop's head and exit or an if's else and exit
+     * @param label one of the labels
+     * @param partner the other label
+     */
+    public void pair(int label, int partner) {
+        partners[label] = partner;
+        partners[partner] = label;
+    }
+
+    /**
+     * Gets what a label marks
+     * @param id the id of the operand
+     * @return the kind of the label, null for operands and for labels read back from atom files
+     */
+    public LabelKind labelKind(int id) {
+        return labelKinds[id];
+    }
+
+    /**
+     * Gets the other label of the block a label belongs to
+     * @param id the id of the label
+     * @return the id of the partner, AtomList.NONE if the label has none
+     */
+    public int partner(int id) {
+        return partners[id];
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public boolean isConstant(int id) {
+        return constants[id];
+    }
+
+    /**
+     * Gets the value of a constant
+     * @param id the id of the constant
+     * @return the value of the constant, 0 for variables
+     */
+    public double value(int id) {
+        return values[id];
+    }
+
+    /**
+     * Gets the value of a constant as the machine stores it
+     * @param id the id of the constant
+     * @return the single precision value of the constant, 0 for variables
+     */
+    public float floatValue(int id) {
+        return floatValues[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            constants = Arrays.copyOf(constants, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            floatValues = Arrays.copyOf(floatValues, size * 2);
+            labelKinds = Arrays.copyOf(labelKinds, size * 2);
+            partners = Arrays.copyOf(partners, size * 2);
+        }
+
+        names[size] = name;
+        partners[size] = AtomList.NONE;
+
+        return size++;
+    }
+}
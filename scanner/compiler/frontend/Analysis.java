@@ -0,0 +1,6 @@
+package compiler.frontend;
+
+public enum Analysis {  // Facts About the Atoms that Passes Share Until a Pass Changes the Atoms
+    CONTROL_FLOW_GRAPH,
+    LIVENESS
+}
@@ -0,0 +1,91 @@
+package compiler.frontend;
+
+import compiler.common.AtomFormat;
+import compiler.common.AtomList;
+import compiler.common.Comparison;
+import compiler.common.OperandTable;
+import compiler.common.Operation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes atoms in the binary format described by AtomFormat, through a buffer that is flushed to the file
+ * channel whenever it fills up.
+ */
+public class AtomWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public AtomWriter(String filename) throws IOException {
+        this.channel = FileChannel.open(Path.of(filename),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void writeAtoms(AtomList atoms) throws IOException {
+        OperandTable operands = atoms.getOperands();
+
+        buffer.putInt(AtomFormat.MAGIC);
+        buffer.putInt(AtomFormat.VERSION);
+        buffer.putInt(operands.size());
+        buffer.putInt(atoms.size());
+
+        for (int id = 0; id < operands.size(); id++) {
+            byte[] name = operands.name(id).getBytes(StandardCharsets.US_ASCII);
+
+            reserve(Integer.BYTES);
+            buffer.putInt(name.length);
+
+            // Long names are split across flushes
+            for (int written = 0; written < name.length; ) {
+                reserve(1);
+                int length = Math.min(buffer.remaining(), name.length - written);
+                buffer.put(name, written, length);
+                written += length;
+            }
+        }
+
+        for (int i = 0; i < atoms.size(); i++) {
+            Operation op = atoms.getOp(i);
+            Comparison cmp = atoms.getCmp(i);
+
+            reserve(AtomFormat.RECORD_SIZE);
+            buffer.put((byte) (op == null ? AtomList.NONE : op.ordinal()));
+            buffer.put((byte) (cmp == null ? AtomList.NONE : cmp.ordinal()));
+            buffer.putShort((short) 0);
+            buffer.putInt(atoms.getLeft(i));
+            buffer.putInt(atoms.getRight(i));
+            buffer.putInt(atoms.getResult(i));
+            buffer.putInt(atoms.getDest(i));
+        }
+
+        flush();
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void reserve(int bytes) throws IOException {  // Makes Room for the Next Write
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+}
@@ -1,30 +1,141 @@
 package compiler.frontend;
 
-import compiler.common.AtomOperation;
+import compiler.common.AtomList;
 import compiler.common.CommandLineArguments;
+import compiler.common.OperandTable;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileWriter;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class CompilerFrontend {
     public static void main(String[] args) throws Exception {
         CommandLineArguments commandLineArguments = new CommandLineArguments(args);
-        ScannerProject.initializeStates();
 
-        List<Token> tokens = ScannerProject.tokenizeInput(commandLineArguments.getInput());
-        ParserProject parser = new ParserProject(tokens);
-        List<AtomOperation> atoms = parser.parse();
+        AtomList atoms = parse(commandLineArguments.getInput(), commandLineArguments.getParallelScan());
+        PassManager.Report report = GlobalOptimizer.run(atoms, commandLineArguments.getOptimizationLevel());
 
-        if(commandLineArguments.getDoGlobalOptimization()) {
-            GlobalOptimizer.run(atoms);
+        if (commandLineArguments.getPassReport()) {
+            report.print(System.out);
         }
 
-        FileWriter atomFile = new FileWriter(commandLineArguments.getOutput());
+        writeAtoms(atoms, commandLineArguments.getOutput(), commandLineArguments.getTextAtoms());
+    }
+
+    /**
+     * Scans and parses a source file into atoms and runs the global optimizer on them
+     * @param input the source file
+     * @param parallelScan whether the file is scanned in parallel chunks before parsing
+     * @param optimizationLevel the level the global optimizer runs at, 0 leaves the atoms as parsed
+     * @return the atoms of the program
+     */
+    public static AtomList compile(String input, boolean parallelScan, int optimizationLevel) throws IOException {
+        AtomList atoms = parse(input, parallelScan);
+
+        GlobalOptimizer.run(atoms, optimizationLevel);
+
+        return atoms;
+    }
+
+    /**
+     * Scans and parses a source already read into memory and runs the global optimizer on the atoms
+     * @param source the bytes of the source
+     * @param parallelScan whether the source is scanned in parallel chunks before parsing
+     * @param optimizationLevel the level the global optimizer runs at, 0 leaves the atoms as parsed
+     * @return the atoms of the program
+     */
+    public static AtomList compile(byte[] source, boolean parallelScan, int optimizationLevel) throws IOException {
+        AtomList atoms = parse(source, parallelScan);
+
+        GlobalOptimizer.run(atoms, optimizationLevel);
+
+        return atoms;
+    }
+
+    /**
+     * Scans and parses a source file into atoms without optimizing them
+     * @param input the source file
+     * @param parallelScan whether the file is scanned in parallel chunks before parsing
+     * @return the atoms of the program
+     */
+    public static AtomList parse(String input, boolean parallelScan) throws IOException {
+        return withParser(input, parallelScan, new OperandTable(), ParserProject::parse);
+    }
+
+    /**
+     * Scans and parses a source already read into memory without optimizing the atoms
+     * @param source the bytes of the source
+     * @param parallelScan whether the source is scanned in parallel chunks before parsing
+     * @return the atoms of the program
+     */
+    public static AtomList parse(byte[] source, boolean parallelScan) throws IOException {
+        OperandTable operands = new OperandTable();
+
+        if (parallelScan) {
+            TokenBuffer tokens = ScannerProject.scanParallel(ByteBuffer.wrap(source), new SymbolTable());
+
+            return new ParserProject(tokens.source(), operands, 0).parse();
+        }
+
+        return new ParserProject(ScannerProject.open(Channels.newChannel(new ByteArrayInputStream(source))), operands, 0).parse();
+    }
+
+    /**
+     * Scans and parses a source file, handing the atoms to a sink in batches while parsing goes on.
+     * The global optimizer needs the whole program, so it can't run on streamed atoms
+     * @param input the source file
+     * @param parallelScan whether the file is scanned in parallel chunks before parsing
+     * @param operands the operand table the atoms are interned in
+     * @param sink receives the atoms in order
+     */
+    public static void stream(String input, boolean parallelScan, OperandTable operands, Consumer<AtomList> sink) throws IOException {
+        withParser(input, parallelScan, operands, parser -> {
+            parser.parse(sink);
+            return null;
+        });
+    }
+
+    private static <T> T withParser(String input, boolean parallelScan, OperandTable operands, Function<ParserProject, T> task) throws IOException {
+        if (parallelScan) {
+            // Large inputs are scanned in parallel chunks up front, then parsed from the token buffer
+            TokenBuffer tokens = ScannerProject.scanParallel(input, new SymbolTable());
+
+            return task.apply(new ParserProject(tokens.source(), operands, 0));
+        }
+
+        // Scanning and parsing run as one pass, the scanner only reads ahead as far as the parser asks
+        try (FileChannel channel = FileChannel.open(Path.of(input), StandardOpenOption.READ)) {
+            return task.apply(new ParserProject(ScannerProject.open(channel), operands, 0));
+        }
+    }
+
+    /**
+     * Writes atoms to a file for the backend
+     * @param atoms the atoms to write
+     * @param output the file to write
+     * @param text whether the atoms are written in the text format instead of binary
+     */
+    public static void writeAtoms(AtomList atoms, String output, boolean text) throws IOException {
+        if (text) {
+            // The text format is a debug dump, the backend reads both
+            FileWriter atomFile = new FileWriter(output);
 
-        for (AtomOperation atom : atoms) {
-            atomFile.write(atom.toString());
-            atomFile.write(System.lineSeparator());
+            for (int i = 0; i < atoms.size(); i++) {
+                atomFile.write(atoms.toString(i));
+                atomFile.write(System.lineSeparator());
+            }
+            atomFile.close();
+        } else {
+            try (AtomWriter atomWriter = new AtomWriter(output)) {
+                atomWriter.writeAtoms(atoms);
+            }
         }
-        atomFile.close();
     }
 }
@@ -0,0 +1,763 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+import compiler.common.Comparison;
+import compiler.common.OperandTable;
+import compiler.common.Operation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Sparse conditional constant propagation after Wegman and Zadeck. The variables are renamed into static single
+ * assignment form on the side: every definition, every merge of definitions where control joins and the zero
+ * each variable starts with is a value. Each value sits on the lattice unknown, constant, overdefined and only
+ * moves down it, and a block is only looked at once an executable edge reaches it. Every value and every edge
+ * changes a bounded number of times, so the work grows with the size of the program, never with how often
+ * its loops run.
+ * <p>
+ * Once solved, definitions with a constant value become moves of the constant, uses of a constant value read
+ * the constant, tests with a known outcome become a jump or are dropped and blocks no executable edge reaches
+ * are deleted.
+ */
+final class ConstantPropagation {
+    private enum Lattice {
+        UNKNOWN,
+        CONSTANT,
+        OVERDEFINED
+    }
+
+    private static final int ZERO = 0;  // The Value Every Variable Holds Before its First Definition
+    private static final int[] NO_VALUES = new int[0];
+
+    private final OptimizationContext context;
+    private final AtomList atoms;
+    private final OperandTable operands;
+    private final ControlFlowGraph graph;
+
+    // The values each atom reads and defines, -1 for constants and missing operands
+    private final int[] leftValues;
+    private final int[] rightValues;
+    private final int[] resultValues;
+
+    // Merges of definitions, by block and by value
+    private final int[][] phis;
+    private final int[] phiCounts;
+    private int[] phiVariables;
+    private int[][] phiArguments;  // Value Coming in Over Each Predecessor of the Block, -1 From Unreachable Ones
+    private int[] phiBlocks;
+
+    // Atoms and merges reading each value, merges are stored as ~value
+    private int[] userStarts;
+    private int[] users;
+
+    private int valueCount;
+    private Lattice[] lattice;
+    private float[] constants;
+    private final boolean[] visited;
+    private final byte[] executableEdges;  // Bit k is Set Once the Edge to successors()[k] is Executable
+    private final IntQueue blockWorklist = new IntQueue();
+    private final IntQueue valueWorklist = new IntQueue();
+
+    private HashMap<Integer, Integer> constantIds;  // Operand Id of Each Constant, by its Float Bits
+
+    ConstantPropagation(OptimizationContext context) {
+        this.context = context;
+        this.atoms = context.getAtoms();
+        this.operands = atoms.getOperands();
+        this.graph = context.getControlFlowGraph();
+        this.leftValues = new int[atoms.size()];
+        this.rightValues = new int[atoms.size()];
+        this.resultValues = new int[atoms.size()];
+        this.phis = new int[graph.size()][];
+        this.phiCounts = new int[graph.size()];
+        this.visited = new boolean[graph.size()];
+        this.executableEdges = new byte[graph.size()];
+    }
+
+    /**
+     * Propagates constants through the atoms of the context and rewrites them
+     */
+    void run() {
+        if (atoms.isEmpty()) {
+            return;
+        }
+
+        numberDefinitions();
+        placePhis();
+        rename();
+        findUsers();
+        solve();
+        rewrite();
+    }
+
+    private static boolean isDefinition(Operation op) {
+        return switch (op) {
+            case ADD, SUB, MUL, DIV, NEG, MOV -> true;
+            case TST, JMP, LBL -> false;
+        };
+    }
+
+    private boolean isVariable(int operand) {
+        return operand != AtomList.NONE && !operands.isConstant(operand);
+    }
+
+    // Definitions get the values after ZERO in atom order, merges are numbered after them once they are placed
+    private void numberDefinitions() {
+        valueCount = ZERO + 1;
+
+        for (int i = 0; i < atoms.size(); i++) {
+            boolean defines = isDefinition(atoms.getOp(i)) && isVariable(atoms.getResult(i));
+
+            resultValues[i] = defines ? valueCount++ : -1;
+        }
+    }
+
+    /**
+     * Places a merge at the iterated dominance frontier of the definitions of every variable that is read in
+     * some block before that block defines it, the others never need one (semi-pruned form, after Briggs)
+     */
+    private void placePhis() {
+        int[] idom = graph.immediateDominators();
+        int[][] frontiers = dominanceFrontiers(idom);
+        int variableCount = operands.size();
+        int[] definedIn = new int[variableCount];  // Last Block + 1 Defining Each Variable While Scanning
+        BitSet global = new BitSet(variableCount);
+        int[][] definitionBlocks = new int[variableCount][];
+        int[] definitionCounts = new int[variableCount];
+
+        for (ControlFlowGraph.BasicBlock block : graph.getBlocks()) {
+            if (idom[block.index()] < 0) {
+                continue;
+            }
+
+            for (int i = block.start(); i < block.end(); i++) {
+                if (isVariable(atoms.getLeft(i)) && definedIn[atoms.getLeft(i)] != block.index() + 1) {
+                    global.set(atoms.getLeft(i));
+                }
+
+                if (isVariable(atoms.getRight(i)) && definedIn[atoms.getRight(i)] != block.index() + 1) {
+                    global.set(atoms.getRight(i));
+                }
+
+                if (resultValues[i] >= 0) {
+                    int variable = atoms.getResult(i);
+
+                    if (definedIn[variable] != block.index() + 1) {
+                        definedIn[variable] = block.index() + 1;
+                        definitionBlocks[variable] = append(definitionBlocks[variable], definitionCounts[variable]++, block.index());
+                    }
+                }
+            }
+        }
+
+        int[] placed = new int[graph.size()];  // Variable + 1 Each Block Last Got a Merge for
+        int[] queued = new int[graph.size()];  // Variable + 1 Each Block Was Last Queued for
+        int[] worklist = new int[graph.size()];
+        int phiCount = 0;
+
+        phiVariables = new int[16];
+        phiBlocks = new int[16];
+
+        for (int variable = global.nextSetBit(0); variable >= 0; variable = global.nextSetBit(variable + 1)) {
+            int size = 0;
+
+            for (int i = 0; i < definitionCounts[variable]; i++) {
+                worklist[size++] = definitionBlocks[variable][i];
+                queued[definitionBlocks[variable][i]] = variable + 1;
+            }
+
+            while (size > 0) {
+                int block = worklist[--size];
+
+                for (int frontier : frontiers[block]) {
+                    if (placed[frontier] == variable + 1) {
+                        continue;
+                    }
+
+                    placed[frontier] = variable + 1;
+
+                    if (phiCount == phiVariables.length) {
+                        phiVariables = Arrays.copyOf(phiVariables, phiCount * 2);
+                        phiBlocks = Arrays.copyOf(phiBlocks, phiCount * 2);
+                    }
+
+                    int value = valueCount + phiCount;
+
+                    phiVariables[phiCount] = variable;
+                    phiBlocks[phiCount++] = frontier;
+                    phis[frontier] = append(phis[frontier], phiCounts[frontier]++, value);
+
+                    if (queued[frontier] != variable + 1) {
+                        queued[frontier] = variable + 1;
+                        worklist[size++] = frontier;
+                    }
+                }
+            }
+        }
+
+        phiArguments = new int[phiCount][];
+
+        for (int phi = 0; phi < phiCount; phi++) {
+            phiArguments[phi] = new int[graph.getBlock(phiBlocks[phi]).predecessors().length];
+            Arrays.fill(phiArguments[phi], -1);
+        }
+
+        valueCount += phiCount;
+    }
+
+    // Cooper, Harvey and Kennedy: a join is in the frontier of every block from each predecessor up to its dominator.
+    // Control also enters the first block from outside the program, so it is a join as soon as anything jumps to it
+    private int[][] dominanceFrontiers(int[] idom) {
+        int[][] frontiers = new int[graph.size()][];
+        int[] sizes = new int[graph.size()];
+
+        for (ControlFlowGraph.BasicBlock block : graph.getBlocks()) {
+            int edges = block.predecessors().length + (block.index() == 0 ? 1 : 0);
+
+            if (idom[block.index()] < 0 || edges < 2) {
+                continue;
+            }
+
+            for (int predecessor : block.predecessors()) {
+                for (int runner = predecessor; runner >= 0 && runner != idom[block.index()]; runner = idom[runner]) {
+                    if (sizes[runner] > 0 && frontiers[runner][sizes[runner] - 1] == block.index()) {
+                        break;
+                    }
+
+                    frontiers[runner] = append(frontiers[runner], sizes[runner]++, block.index());
+                }
+            }
+        }
+
+        for (int block = 0; block < frontiers.length; block++) {
+            frontiers[block] = frontiers[block] == null ? NO_VALUES : Arrays.copyOf(frontiers[block], sizes[block]);
+        }
+
+        return frontiers;
+    }
+
+    /**
+     * Walks the dominator tree keeping the value each variable currently holds, so every use gets the value of
+     * the definition that reaches it and every merge gets the value each predecessor ends with
+     */
+    private void rename() {
+        int[] idom = graph.immediateDominators();
+        int[] childStarts = new int[graph.size() + 1];
+        int[] children = new int[graph.size()];
+
+        for (int block = 1; block < graph.size(); block++) {
+            if (idom[block] >= 0 && idom[block] != block) {
+                childStarts[idom[block] + 1]++;
+            }
+        }
+
+        for (int block = 0; block < graph.size(); block++) {
+            childStarts[block + 1] += childStarts[block];
+        }
+
+        int[] filled = Arrays.copyOf(childStarts, graph.size());
+
+        for (int block = 1; block < graph.size(); block++) {
+            if (idom[block] >= 0 && idom[block] != block) {
+                children[filled[idom[block]]++] = block;
+            }
+        }
+
+        int[] current = new int[operands.size()];
+        int[] trail = new int[16];  // Pairs of a Variable and the Value it Held Before a Definition
+        int trailSize = 0;
+        int[] marks = new int[graph.size()];
+        int[] stack = new int[graph.size() * 2];
+        int depth = 0;
+
+        Arrays.fill(current, ZERO);
+        Arrays.fill(leftValues, -1);
+        Arrays.fill(rightValues, -1);
+        stack[depth++] = 0;
+
+        while (depth > 0) {
+            int entry = stack[--depth];
+
+            if (entry < 0) {
+                // Leaving the block, its definitions go out of scope
+                for (int block = ~entry; trailSize > marks[block]; trailSize -= 2) {
+                    current[trail[trailSize - 2]] = trail[trailSize - 1];
+                }
+
+                continue;
+            }
+
+            ControlFlowGraph.BasicBlock block = graph.getBlock(entry);
+            marks[entry] = trailSize;
+
+            for (int i = 0; i < phiCounts[entry]; i++) {
+                int variable = phiVariables[phis[entry][i] - firstPhi()];
+
+                trail = append(trail, trailSize++, variable);
+                trail = append(trail, trailSize++, current[variable]);
+                current[variable] = phis[entry][i];
+            }
+
+            for (int i = block.start(); i < block.end(); i++) {
+                if (isVariable(atoms.getLeft(i))) {
+                    leftValues[i] = current[atoms.getLeft(i)];
+                }
+
+                if (isVariable(atoms.getRight(i))) {
+                    rightValues[i] = current[atoms.getRight(i)];
+                }
+
+                if (resultValues[i] >= 0) {
+                    int variable = atoms.getResult(i);
+
+                    trail = append(trail, trailSize++, variable);
+                    trail = append(trail, trailSize++, current[variable]);
+                    current[variable] = resultValues[i];
+                }
+            }
+
+            for (int successor : block.successors()) {
+                int edge = indexOf(graph.getBlock(successor).predecessors(), entry);
+
+                for (int i = 0; i < phiCounts[successor]; i++) {
+                    int phi = phis[successor][i] - firstPhi();
+
+                    phiArguments[phi][edge] = current[phiVariables[phi]];
+                }
+            }
+
+            stack[depth++] = ~entry;
+
+            for (int i = childStarts[entry]; i < childStarts[entry + 1]; i++) {
+                stack[depth++] = children[i];
+            }
+        }
+    }
+
+    private int firstPhi() {
+        return valueCount - phiArguments.length;
+    }
+
+    private void findUsers() {
+        int[] counts = new int[valueCount + 1];
+
+        for (int i = 0; i < atoms.size(); i++) {
+            if (leftValues[i] >= 0) {
+                counts[leftValues[i] + 1]++;
+            }
+
+            if (rightValues[i] >= 0) {
+                counts[rightValues[i] + 1]++;
+            }
+        }
+
+        for (int[] arguments : phiArguments) {
+            for (int argument : arguments) {
+                if (argument >= 0) {
+                    counts[argument + 1]++;
+                }
+            }
+        }
+
+        for (int value = 0; value < valueCount; value++) {
+            counts[value + 1] += counts[value];
+        }
+
+        userStarts = counts;
+        users = new int[counts[valueCount]];
+
+        int[] filled = Arrays.copyOf(counts, valueCount);
+
+        for (int i = 0; i < atoms.size(); i++) {
+            if (leftValues[i] >= 0) {
+                users[filled[leftValues[i]]++] = i;
+            }
+
+            if (rightValues[i] >= 0) {
+                users[filled[rightValues[i]]++] = i;
+            }
+        }
+
+        for (int phi = 0; phi < phiArguments.length; phi++) {
+            for (int argument : phiArguments[phi]) {
+                if (argument >= 0) {
+                    users[filled[argument]++] = ~(firstPhi() + phi);
+                }
+            }
+        }
+    }
+
+    private void solve() {
+        lattice = new Lattice[valueCount];
+        constants = new float[valueCount];
+
+        Arrays.fill(lattice, Lattice.UNKNOWN);
+        lattice[ZERO] = Lattice.CONSTANT;
+
+        visited[0] = true;
+        blockWorklist.add(0);
+
+        while (!blockWorklist.isEmpty() || !valueWorklist.isEmpty()) {
+            while (!blockWorklist.isEmpty()) {
+                ControlFlowGraph.BasicBlock block = graph.getBlock(blockWorklist.poll());
+
+                for (int i = 0; i < phiCounts[block.index()]; i++) {
+                    evaluatePhi(phis[block.index()][i]);
+                }
+
+                for (int i = block.start(); i < block.end(); i++) {
+                    evaluate(i);
+                }
+
+                evaluateBranch(block);
+            }
+
+            while (!valueWorklist.isEmpty()) {
+                int value = valueWorklist.poll();
+
+                for (int i = userStarts[value]; i < userStarts[value + 1]; i++) {
+                    int user = users[i];
+
+                    if (user < 0) {
+                        if (visited[phiBlocks[~user - firstPhi()]]) {
+                            evaluatePhi(~user);
+                        }
+                    } else if (visited[graph.blockOf(user).index()]) {
+                        evaluate(user);
+
+                        if (user == graph.blockOf(user).last()) {
+                            evaluateBranch(graph.blockOf(user));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void evaluatePhi(int value) {
+        int phi = value - firstPhi();
+        ControlFlowGraph.BasicBlock block = graph.getBlock(phiBlocks[phi]);
+        Lattice merged = block.index() == 0 ? Lattice.CONSTANT : Lattice.UNKNOWN;  // Entering the Program Brings ZERO
+        float constant = 0;
+
+        for (int edge = 0; edge < phiArguments[phi].length; edge++) {
+            int argument = phiArguments[phi][edge];
+
+            if (argument < 0 || !isExecutable(block.predecessors()[edge], block.index())) {
+                continue;
+            }
+
+            if (lattice[argument] == Lattice.OVERDEFINED
+                    || (lattice[argument] == Lattice.CONSTANT && merged == Lattice.CONSTANT && !same(constants[argument], constant))) {
+                merged = Lattice.OVERDEFINED;
+                break;
+            }
+
+            if (lattice[argument] == Lattice.CONSTANT) {
+                merged = Lattice.CONSTANT;
+                constant = constants[argument];
+            }
+        }
+
+        lower(value, merged, constant);
+    }
+
+    private void evaluate(int atom) {
+        if (resultValues[atom] < 0) {
+            return;
+        }
+
+        Operation op = atoms.getOp(atom);
+        Lattice left = kind(leftValues[atom]);
+        Lattice right = op == Operation.MOV || op == Operation.NEG ? Lattice.CONSTANT : kind(rightValues[atom]);
+
+        if (left == Lattice.OVERDEFINED || right == Lattice.OVERDEFINED) {
+            lower(resultValues[atom], Lattice.OVERDEFINED, 0);
+        } else if (left == Lattice.CONSTANT && right == Lattice.CONSTANT) {
+            lower(resultValues[atom], Lattice.CONSTANT, fold(atom));
+        }
+    }
+
+    // Computes the value the machine would, in single precision, NEG is generated as 0 - left
+    private float fold(int atom) {
+        float left = constant(atoms.getLeft(atom), leftValues[atom]);
+
+        return switch (atoms.getOp(atom)) {
+            case ADD -> left + constant(atoms.getRight(atom), rightValues[atom]);
+            case SUB -> left - constant(atoms.getRight(atom), rightValues[atom]);
+            case MUL -> left * constant(atoms.getRight(atom), rightValues[atom]);
+            case DIV -> left / constant(atoms.getRight(atom), rightValues[atom]);
+            case NEG -> 0f - left;
+            case MOV -> left;
+            case TST, JMP, LBL -> throw new IllegalArgumentException("Not a definition: " + atoms.getOp(atom));
+        };
+    }
+
+    private void evaluateBranch(ControlFlowGraph.BasicBlock block) {
+        int last = block.last();
+
+        if (atoms.getOp(last) != Operation.TST) {
+            for (int successor : block.successors()) {
+                markEdge(block.index(), successor);
+            }
+
+            return;
+        }
+
+        int outcome = outcome(block);
+
+        if (outcome < 0) {
+            if (graph.jumpTarget(block) < 0 || kind(leftValues[last]) == Lattice.OVERDEFINED || kind(rightValues[last]) == Lattice.OVERDEFINED) {
+                for (int successor : block.successors()) {
+                    markEdge(block.index(), successor);
+                }
+            }
+        } else {
+            markEdge(block.index(), outcome);
+        }
+    }
+
+    /**
+     * Works out where the TST at the end of a block goes
+     * @param block the block
+     * @return the block control goes to, -1 while the operands aren't both constant or if the label isn't placed
+     */
+    private int outcome(ControlFlowGraph.BasicBlock block) {
+        int last = block.last();
+        int target = graph.jumpTarget(block);
+        int next = block.index() + 1 < graph.size() ? block.index() + 1 : -1;
+
+        if (target < 0
+                || kind(leftValues[last]) != Lattice.CONSTANT
+                || kind(rightValues[last]) != Lattice.CONSTANT) {
+            return -1;
+        }
+
+        return jumps(atoms.getCmp(last), constant(atoms.getLeft(last), leftValues[last]), constant(atoms.getRight(last), rightValues[last])) ? target : next;
+    }
+
+    /**
+     * Checks whether a TST jumps. The atom holds the comparison under which control falls through, the machine
+     * jumps when its own comparison of the same code holds, which is the opposite one except for ALWAYS.
+     * NaN compares false either way, just like on the machine
+     */
+    private static boolean jumps(Comparison cmp, float left, float right) {
+        return switch (cmp) {
+            case ALWAYS -> true;
+            case NOT_EQUAL -> left == right;
+            case GREATER_THAN_OR_EQUAL -> left < right;
+            case LESS_THAN_OR_EQUAL -> left > right;
+            case GREATER_THAN -> left <= right;
+            case LESS_THAN -> left >= right;
+            case EQUAL -> left != right;
+        };
+    }
+
+    private void markEdge(int from, int to) {
+        int bit = 1 << indexOf(graph.getBlock(from).successors(), to);
+
+        if ((executableEdges[from] & bit) != 0) {
+            return;
+        }
+
+        executableEdges[from] |= (byte) bit;
+
+        if (!visited[to]) {
+            visited[to] = true;
+            blockWorklist.add(to);
+        } else {
+            for (int i = 0; i < phiCounts[to]; i++) {
+                evaluatePhi(phis[to][i]);
+            }
+        }
+    }
+
+    private boolean isExecutable(int from, int to) {
+        return (executableEdges[from] & (1 << indexOf(graph.getBlock(from).successors(), to))) != 0;
+    }
+
+    private void lower(int value, Lattice kind, float constant) {
+        Lattice old = lattice[value];
+
+        if (kind == Lattice.UNKNOWN || old == Lattice.OVERDEFINED
+                || (old == Lattice.CONSTANT && kind == Lattice.CONSTANT && same(constants[value], constant))) {
+            return;
+        }
+
+        // A constant can only change to overdefined, a second constant would mean the transfer isn't monotone
+        lattice[value] = old == Lattice.CONSTANT ? Lattice.OVERDEFINED : kind;
+        constants[value] = constant;
+        valueWorklist.add(value);
+    }
+
+    private Lattice kind(int value) {  // Operands Without a Value are Constants or Missing, Which Read as 0
+        return value >= 0 ? lattice[value] : Lattice.CONSTANT;
+    }
+
+    private float constant(int operand, int value) {
+        if (value >= 0) {
+            return constants[value];
+        }
+
+        return operand == AtomList.NONE ? 0 : operands.floatValue(operand);
+    }
+
+    private static boolean same(float first, float second) {
+        return Float.floatToIntBits(first) == Float.floatToIntBits(second);
+    }
+
+    private void rewrite() {
+        for (ControlFlowGraph.BasicBlock block : graph.getBlocks()) {
+            if (!visited[block.index()]) {
+                context.delete(block.start(), block.end());
+                continue;
+            }
+
+            boolean decided = atoms.getOp(block.last()) == Operation.TST && outcome(block) >= 0;
+
+            for (int i = block.start(); i < (decided ? block.last() : block.end()); i++) {
+                if (resultValues[i] >= 0 && lattice[resultValues[i]] == Lattice.CONSTANT) {
+                    rewriteDefinition(i, constants[resultValues[i]]);
+                } else {
+                    rewriteUses(i);
+                }
+            }
+
+            if (decided) {
+                if (outcome(block) == graph.jumpTarget(block) && graph.jumpTarget(block) != block.index() + 1) {
+                    atoms.setOp(block.last(), Operation.JMP);
+                    atoms.setLeft(block.last(), AtomList.NONE);
+                    atoms.setRight(block.last(), AtomList.NONE);
+                    atoms.setCmp(block.last(), null);
+                    context.rewrote(1);
+                } else {
+                    context.delete(block.last());
+                }
+            }
+        }
+    }
+
+    private void rewriteDefinition(int atom, float constant) {
+        int left = atoms.getLeft(atom);
+
+        if (atoms.getOp(atom) == Operation.MOV && left != AtomList.NONE && operands.isConstant(left)
+                && same(operands.floatValue(left), constant)) {
+            return;
+        }
+
+        int id = constantId(constant);
+
+        if (id == AtomList.NONE) {
+            rewriteUses(atom);
+            return;
+        }
+
+        atoms.setOp(atom, Operation.MOV);
+        atoms.setLeft(atom, id);
+        atoms.setRight(atom, AtomList.NONE);
+        context.rewrote(1);
+    }
+
+    private void rewriteUses(int atom) {
+        boolean changed = false;
+
+        if (leftValues[atom] >= 0 && lattice[leftValues[atom]] == Lattice.CONSTANT) {
+            int id = constantId(constants[leftValues[atom]]);
+
+            if (id != AtomList.NONE) {
+                atoms.setLeft(atom, id);
+                changed = true;
+            }
+        }
+
+        if (rightValues[atom] >= 0 && lattice[rightValues[atom]] == Lattice.CONSTANT) {
+            int id = constantId(constants[rightValues[atom]]);
+
+            if (id != AtomList.NONE) {
+                atoms.setRight(atom, id);
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            context.rewrote(1);
+        }
+    }
+
+    /**
+     * Gets the operand holding a constant, reusing one the program already has
+     * @param constant the value
+     * @return the id of the constant, NONE if the value can't be written as one, operands are only numbers when
+     * they start with a digit so negative values, infinities and NaN can't
+     */
+    private int constantId(float constant) {
+        if (constantIds == null) {
+            constantIds = new HashMap<>();
+
+            for (int id = 0; id < operands.size(); id++) {
+                if (operands.isConstant(id)) {
+                    constantIds.putIfAbsent(Float.floatToIntBits(operands.floatValue(id)), id);
+                }
+            }
+        }
+
+        if (!Float.isFinite(constant) || Float.floatToRawIntBits(constant) < 0) {
+            return AtomList.NONE;
+        }
+
+        return constantIds.computeIfAbsent(Float.floatToIntBits(constant), bits -> operands.intern(Float.toString(constant)));
+    }
+
+    private static int indexOf(int[] blocks, int block) {
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] == block) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("Block %d is not linked".formatted(block));
+    }
+
+    private static int[] append(int[] list, int size, int value) {
+        if (list == null) {
+            list = new int[4];
+        } else if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+
+        list[size] = value;
+
+        return list;
+    }
+
+    // A queue of ints that grows as needed, the worklists see every value and block a bounded number of times
+    private static final class IntQueue {
+        private int[] elements = new int[16];
+        private int head = 0;
+        private int tail = 0;
+
+        void add(int element) {
+            if (tail == elements.length) {
+                if (head > 0) {
+                    System.arraycopy(elements, head, elements, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                } else {
+                    elements = Arrays.copyOf(elements, elements.length * 2);
+                }
+            }
+
+            elements[tail++] = element;
+        }
+
+        int poll() {
+            return elements[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+import compiler.common.Operation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The basic blocks of a list of atoms and the jumps between them. A block starts at the first atom, at every
+ * label and after every JMP and TST, and ends right before the next block starts. A JMP leaves its block only
+ * for the label it names, a TST for its label and the next block, every other block falls through.
+ * The graph describes the atoms as they were when it was built, a pass that changes the atoms builds a new one.
+ */
+public class ControlFlowGraph {
+    private final AtomList atoms;
+    private final List<BasicBlock> blocks = new ArrayList<>();
+    private final int[] blockOfAtom;
+    private final int[] labelBlocks;  // Block Each Label Starts, by Label Id
+    private int[] order;  // Reverse postorder of the blocks reachable from the entry
+    private int[] dominators;  // Immediate dominator of each block
+
+    /**
+     * A run of atoms that is always executed from its first atom to its last
+     * @param index the position of the block in the graph
+     * @param start the index of the first atom of the block
+     * @param end the index after the last atom of the block
+     * @param successors the indexes of the blocks control can go to from this one
+     * @param predecessors the indexes of the blocks control can come from
+     */
+    public record BasicBlock(int index, int start, int end, int[] successors, int[] predecessors) {
+        public int size() {
+            return end - start;
+        }
+
+        public int last() {
+            return end - 1;
+        }
+    }
+
+    /**
+     * Splits atoms into blocks and links them
+     * @param atoms the atoms of the program
+     */
+    public ControlFlowGraph(AtomList atoms) {
+        this.atoms = atoms;
+        this.blockOfAtom = new int[atoms.size()];
+
+        int[] starts = leaders();
+        this.labelBlocks = new int[atoms.getOperands().size()];
+
+        Arrays.fill(labelBlocks, -1);
+
+        for (int block = 0; block < starts.length; block++) {
+            int end = block + 1 < starts.length ? starts[block + 1] : atoms.size();
+
+            Arrays.fill(blockOfAtom, starts[block], end, block);
+
+            for (int i = starts[block]; i < end && atoms.getOp(i) == Operation.LBL; i++) {
+                labelBlocks[atoms.getDest(i)] = block;
+            }
+        }
+
+        int[][] successors = new int[starts.length][];
+        int[] predecessorCounts = new int[starts.length];
+
+        for (int block = 0; block < starts.length; block++) {
+            int end = block + 1 < starts.length ? starts[block + 1] : atoms.size();
+            successors[block] = successors(atoms, end - 1, block + 1 < starts.length ? block + 1 : -1, labelBlocks);
+
+            for (int successor : successors[block]) {
+                predecessorCounts[successor]++;
+            }
+        }
+
+        int[][] predecessors = new int[starts.length][];
+
+        for (int block = 0; block < starts.length; block++) {
+            predecessors[block] = new int[predecessorCounts[block]];
+            predecessorCounts[block] = 0;
+        }
+
+        for (int block = 0; block < starts.length; block++) {
+            for (int successor : successors[block]) {
+                predecessors[successor][predecessorCounts[successor]++] = block;
+            }
+        }
+
+        for (int block = 0; block < starts.length; block++) {
+            int end = block + 1 < starts.length ? starts[block + 1] : atoms.size();
+
+            blocks.add(new BasicBlock(block, starts[block], end, successors[block], predecessors[block]));
+        }
+    }
+
+    public AtomList getAtoms() {
+        return atoms;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public BasicBlock getBlock(int index) {
+        return blocks.get(index);
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Gets the block an atom belongs to
+     * @param atom the index of the atom
+     * @return the block holding the atom
+     */
+    public BasicBlock blockOf(int atom) {
+        return blocks.get(blockOfAtom[atom]);
+    }
+
+    /**
+     * Gets the blocks reachable from the entry, each block before its successors unless a loop leads back to it
+     * @return the indexes of the reachable blocks in reverse postorder
+     */
+    public int[] reversePostorder() {
+        if (order == null) {
+            order = postorder();
+
+            for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+                int block = order[i];
+                order[i] = order[j];
+                order[j] = block;
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * Gets the block the JMP or TST at the end of a block jumps to
+     * @param block the block
+     * @return the index of the target, -1 if the block doesn't end in a jump or its label is never placed
+     */
+    public int jumpTarget(BasicBlock block) {
+        Operation op = atoms.getOp(block.last());
+
+        return op == Operation.JMP || op == Operation.TST ? labelBlock(atoms, block.last(), labelBlocks) : -1;
+    }
+
+    /**
+     * Gets the immediate dominator of every block, the last block before it that every path from the entry
+     * passes through. Computed with the iterative algorithm of Cooper, Harvey and Kennedy over reverse postorder
+     * @return the immediate dominator by block index, the entry is its own and unreachable blocks have -1
+     */
+    public int[] immediateDominators() {
+        if (dominators != null) {
+            return dominators;
+        }
+
+        int[] reversePostorder = reversePostorder();
+        int[] position = new int[blocks.size()];  // Index of Each Block in Reverse Postorder
+        int[] idom = new int[blocks.size()];
+
+        Arrays.fill(idom, -1);
+
+        for (int i = 0; i < reversePostorder.length; i++) {
+            position[reversePostorder[i]] = i;
+        }
+
+        if (reversePostorder.length > 0) {
+            idom[reversePostorder[0]] = reversePostorder[0];
+        }
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int i = 1; i < reversePostorder.length; i++) {
+                int block = reversePostorder[i];
+                int dominator = -1;
+
+                for (int predecessor : blocks.get(block).predecessors()) {
+                    if (idom[predecessor] >= 0) {
+                        dominator = dominator < 0 ? predecessor : intersect(idom, position, predecessor, dominator);
+                    }
+                }
+
+                if (idom[block] != dominator) {
+                    idom[block] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        dominators = idom;
+
+        return dominators;
+    }
+
+    /**
+     * Checks which blocks control can reach from the first atom
+     * @return a flag for each block, true if it is reachable
+     */
+    public boolean[] reachable() {
+        boolean[] reachable = new boolean[blocks.size()];
+
+        for (int block : reversePostorder()) {
+            reachable[block] = true;
+        }
+
+        return reachable;
+    }
+
+    // Walks both blocks up the dominator tree until they meet, the block later in reverse postorder moves first
+    private static int intersect(int[] idom, int[] position, int first, int second) {
+        while (first != second) {
+            while (position[first] > position[second]) {
+                first = idom[first];
+            }
+
+            while (position[second] > position[first]) {
+                second = idom[second];
+            }
+        }
+
+        return first;
+    }
+
+    private int[] leaders() {
+        int[] starts = new int[atoms.size() + 1];
+        int count = 0;
+
+        for (int i = 0; i < atoms.size(); i++) {
+            boolean leader = i == 0
+                    || (atoms.getOp(i) == Operation.LBL && atoms.getOp(i - 1) != Operation.LBL)
+                    || atoms.getOp(i - 1) == Operation.JMP
+                    || atoms.getOp(i - 1) == Operation.TST;
+
+            if (leader) {
+                starts[count++] = i;
+            }
+        }
+
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int[] successors(AtomList atoms, int last, int next, int[] labelBlocks) {
+        Operation op = atoms.getOp(last);
+        int target = op == Operation.JMP || op == Operation.TST ? labelBlock(atoms, last, labelBlocks) : -1;
+
+        if (op == Operation.JMP) {
+            return target < 0 ? new int[0] : new int[] {target};
+        }
+
+        if (op == Operation.TST && target >= 0 && target != next) {
+            return next < 0 ? new int[] {target} : new int[] {next, target};
+        }
+
+        return next < 0 ? new int[0] : new int[] {next};
+    }
+
+    private static int labelBlock(AtomList atoms, int jump, int[] labelBlocks) {
+        int label = atoms.getDest(jump);
+
+        return label == AtomList.NONE ? -1 : labelBlocks[label];
+    }
+
+    private int[] postorder() {
+        int[] postorder = new int[blocks.size()];
+        int count = 0;
+
+        if (blocks.isEmpty()) {
+            return postorder;
+        }
+
+        // Explicit stack of blocks and the index of the next successor to visit, so deep programs don't overflow
+        boolean[] visited = new boolean[blocks.size()];
+        int[] stack = new int[blocks.size()];
+        int[] nextSuccessor = new int[blocks.size()];
+        int depth = 0;
+
+        stack[depth++] = 0;
+        visited[0] = true;
+
+        while (depth > 0) {
+            int block = stack[depth - 1];
+            int[] successors = blocks.get(block).successors();
+
+            if (nextSuccessor[block] < successors.length) {
+                int successor = successors[nextSuccessor[block]++];
+
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack[depth++] = successor;
+                }
+            } else {
+                postorder[count++] = block;
+                depth--;
+            }
+        }
+
+        return Arrays.copyOf(postorder, count);
+    }
+}
@@ -0,0 +1,217 @@
+package compiler.frontend;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+
+/**
+ * Solves dataflow problems whose facts are bit sets, such as which variables are live or which definitions
+ * reach a point, over the blocks of a ControlFlowGraph. Blocks are revisited from a worklist until no fact
+ * changes, starting in reverse postorder for forward problems and in postorder for backward ones so most
+ * blocks see their inputs settled on the first visit. Transfer functions have to be monotone for the solver
+ * to stop, the gen and kill problems made by genKill always are.
+ */
+public final class DataflowSolver {
+    public enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    public enum Meet {
+        UNION,
+        INTERSECTION
+    }
+
+    /**
+     * A dataflow problem over bit sets of a fixed width
+     */
+    public interface Problem {
+        Direction direction();
+
+        Meet meet();
+
+        int width();
+
+        /**
+         * Gets the fact that enters the program, at the entry for forward problems and at the exits for backward ones
+         * @return the boundary fact, empty unless overridden
+         */
+        default BitSet boundary() {
+            return new BitSet();
+        }
+
+        /**
+         * Computes the fact on one side of a block from the fact on the other
+         * @param block the block
+         * @param input the fact where the analysis enters the block, at its start for forward problems and its end for backward ones
+         * @param output receives the fact where the analysis leaves the block, it is empty when passed in
+         */
+        void transfer(ControlFlowGraph.BasicBlock block, BitSet input, BitSet output);
+    }
+
+    /**
+     * The facts at the start and end of every block
+     */
+    public record Result(BitSet[] entry, BitSet[] exit) {
+        public BitSet entry(int block) {
+            return entry[block];
+        }
+
+        public BitSet exit(int block) {
+            return exit[block];
+        }
+    }
+
+    private DataflowSolver() {
+    }
+
+    /**
+     * Makes a problem whose transfer function adds the facts a block generates and removes the ones it kills
+     * @param direction the direction facts flow in
+     * @param meet how the facts of joining paths are combined
+     * @param width the number of facts
+     * @param gen the facts each block generates, by block index
+     * @param kill the facts each block kills, by block index
+     * @return the problem
+     */
+    public static Problem genKill(Direction direction, Meet meet, int width, BitSet[] gen, BitSet[] kill) {
+        return genKill(direction, meet, width, gen, kill, new BitSet());
+    }
+
+    /**
+     * Makes a gen and kill problem with facts that already hold where the program is entered or left
+     * @param direction the direction facts flow in
+     * @param meet how the facts of joining paths are combined
+     * @param width the number of facts
+     * @param gen the facts each block generates, by block index
+     * @param kill the facts each block kills, by block index
+     * @param boundary the facts at the entry for forward problems and at the exits for backward ones
+     * @return the problem
+     */
+    public static Problem genKill(Direction direction, Meet meet, int width, BitSet[] gen, BitSet[] kill, BitSet boundary) {
+        return new Problem() {
+            public Direction direction() {
+                return direction;
+            }
+
+            public Meet meet() {
+                return meet;
+            }
+
+            public int width() {
+                return width;
+            }
+
+            public BitSet boundary() {
+                return (BitSet) boundary.clone();
+            }
+
+            public void transfer(ControlFlowGraph.BasicBlock block, BitSet input, BitSet output) {
+                output.or(input);
+                output.andNot(kill[block.index()]);
+                output.or(gen[block.index()]);
+            }
+        };
+    }
+
+    /**
+     * Solves a problem to its fixed point
+     * @param graph the blocks the problem is solved over
+     * @param problem the problem to solve
+     * @return the facts at the start and end of every block
+     */
+    public static Result solve(ControlFlowGraph graph, Problem problem) {
+        int size = graph.size();
+        boolean forward = problem.direction() == Direction.FORWARD;
+        BitSet top = new BitSet(problem.width());
+
+        if (problem.meet() == Meet.INTERSECTION) {
+            top.set(0, problem.width());
+        }
+
+        // Facts where the analysis enters and leaves each block, in the direction of the analysis
+        BitSet[] in = new BitSet[size];
+        BitSet[] out = new BitSet[size];
+
+        for (int block = 0; block < size; block++) {
+            in[block] = (BitSet) top.clone();
+            out[block] = (BitSet) top.clone();
+        }
+
+        ArrayDeque<Integer> worklist = new ArrayDeque<>(size);
+        boolean[] queued = new boolean[size];
+
+        for (int block : visitOrder(graph, forward)) {
+            worklist.add(block);
+            queued[block] = true;
+        }
+
+        while (!worklist.isEmpty()) {
+            int block = worklist.poll();
+            ControlFlowGraph.BasicBlock basicBlock = graph.getBlock(block);
+            queued[block] = false;
+
+            int[] sources = forward ? basicBlock.predecessors() : basicBlock.successors();
+            boolean boundary = forward ? block == 0 : basicBlock.successors().length == 0;
+            BitSet input = boundary ? problem.boundary() : null;
+
+            for (int source : sources) {
+                input = meet(problem.meet(), input, out[source]);
+            }
+
+            in[block] = input != null ? input : (BitSet) top.clone();
+
+            BitSet output = new BitSet(problem.width());
+            problem.transfer(basicBlock, in[block], output);
+
+            if (!output.equals(out[block])) {
+                out[block] = output;
+
+                for (int target : forward ? basicBlock.successors() : basicBlock.predecessors()) {
+                    if (!queued[target]) {
+                        worklist.add(target);
+                        queued[target] = true;
+                    }
+                }
+            }
+        }
+
+        return forward ? new Result(in, out) : new Result(out, in);
+    }
+
+    private static BitSet meet(Meet meet, BitSet accumulated, BitSet fact) {
+        if (accumulated == null) {
+            return (BitSet) fact.clone();
+        }
+
+        if (meet == Meet.UNION) {
+            accumulated.or(fact);
+        } else {
+            accumulated.and(fact);
+        }
+
+        return accumulated;
+    }
+
+    // Reachable blocks in the order that settles them fastest, then the unreachable ones so they get facts too
+    private static int[] visitOrder(ControlFlowGraph graph, boolean forward) {
+        int[] reversePostorder = graph.reversePostorder();
+        int[] order = new int[graph.size()];
+        boolean[] listed = new boolean[graph.size()];
+        int count = 0;
+
+        for (int i = 0; i < reversePostorder.length; i++) {
+            int block = reversePostorder[forward ? i : reversePostorder.length - 1 - i];
+
+            order[count++] = block;
+            listed[block] = true;
+        }
+
+        for (int block = 0; block < graph.size(); block++) {
+            if (!listed[block]) {
+                order[count++] = block;
+            }
+        }
+
+        return order;
+    }
+}
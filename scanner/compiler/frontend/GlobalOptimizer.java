@@ -1,16 +1,51 @@
 package compiler.frontend;
 
-import compiler.common.AtomOperation;
+import compiler.common.AtomList;
 import compiler.common.Operation;
 
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class GlobalOptimizer {
+    public static final int DEFAULT_LEVEL = 2;  // What -g Runs When no -O Level is Given
 
-    public static void run(List<AtomOperation> atoms) {
-        removeBetweenJumpAndLabel(atoms);
-        removeUnreachableConditions(atoms);
+    public static final OptimizationPass REMOVE_BETWEEN_JUMP_AND_LABEL = new Pass("remove-between-jump-and-label",
+            EnumSet.of(Analysis.CONTROL_FLOW_GRAPH), GlobalOptimizer::removeBetweenJumpAndLabel);
+    public static final OptimizationPass CONSTANT_PROPAGATION = new Pass("sparse-conditional-constant-propagation",
+            EnumSet.of(Analysis.CONTROL_FLOW_GRAPH), context -> new ConstantPropagation(context).run());
+    public static final OptimizationPass DEAD_STORE_ELIMINATION = new Pass("dead-store-elimination",
+            EnumSet.of(Analysis.CONTROL_FLOW_GRAPH, Analysis.LIVENESS), GlobalOptimizer::removeDeadStores);
+
+    public static void run(AtomList atoms) {
+        run(atoms, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Optimizes atoms with the passes of an optimization level, repeating them until they change nothing more
+     * @param atoms the atoms to optimize in place
+     * @param level 0 runs nothing, 1 removes code after jumps, 2 also propagates constants, removes branches that
+     *              are never taken and removes stores that are overwritten before they are read
+     * @return the time and effect of every pass
+     */
+    public static PassManager.Report run(AtomList atoms, int level) {
+        return new PassManager(pipeline(level), PassManager.DEFAULT_MAX_ITERATIONS).run(atoms);
+    }
+
+    /**
+     * Gets the passes of an optimization level
+     * @param level the level, from 0 to 2
+     * @return the passes in the order they run
+     */
+    public static List<OptimizationPass> pipeline(int level) {
+        return switch (level) {
+            case 0 -> List.of();
+            case 1 -> List.of(REMOVE_BETWEEN_JUMP_AND_LABEL);
+            case 2 -> List.of(CONSTANT_PROPAGATION, REMOVE_BETWEEN_JUMP_AND_LABEL, DEAD_STORE_ELIMINATION);
+            default -> throw new IllegalArgumentException("Invalid optimization level %d".formatted(level));
+        };
     }
 
     // private static void removeBetweenJumpAndLabel(List<AtomOperation> atoms) {
@@ -26,160 +61,64 @@ public class GlobalOptimizer {
     //         i++;
     //     }
     // }
-    private static void removeBetweenJumpAndLabel(List<AtomOperation> atoms) {
-        int i = 0;
-        boolean jumpFound = false;
-
-        while(i < atoms.size()) {
-            //if a jump operation is found set the flag but continue to look at the next op
-            if(atoms.get(i).getOp() == Operation.JMP) {
-                jumpFound = true;
-                i++;
-                continue;
-            }
-            //if the flag is set and the next op is lbl, turn the flag off and continue bc correct
-            if(jumpFound && atoms.get(i).getOp() == Operation.LBL) {
-                jumpFound = false;
-                i++;
-                continue;
+    // Atoms after a JMP can only run if a jump lands on them, which needs a label, so every block from a JMP
+    // up to the next block that starts with a label is dead
+    private static void removeBetweenJumpAndLabel(OptimizationContext context) {
+        AtomList atoms = context.getAtoms();
+        ControlFlowGraph graph = context.getControlFlowGraph();
+        boolean dead = false;
+
+        for (int block = 1; block < graph.size(); block++) {
+            ControlFlowGraph.BasicBlock basicBlock = graph.getBlock(block);
+            ControlFlowGraph.BasicBlock previous = graph.getBlock(block - 1);
+
+            dead = atoms.getOp(basicBlock.start()) != Operation.LBL
+                    && (dead || atoms.getOp(previous.last()) == Operation.JMP);
+
+            if (dead) {
+                context.delete(basicBlock.start(), basicBlock.end());
             }
-            //if jump was never found continue
-            if(!jumpFound){
-                i++;
-                continue;
-            }
-            //otherwise code between jump and lbl so remove until lbl is found and flag is reset
-            else{
-                atoms.remove(i);
-            }
-            i++;
         }
     }
 
-    private static void removeUnreachableConditions(List<AtomOperation> atoms) {
-        HashMap<String, Double> variables = new HashMap<>();
-        int i = 0;
-
-        while(i < atoms.size()) {
-            AtomOperation atom = atoms.get(i);
-            Operation op = atom.getOp();
-
-            double left = parseFactor(atom.getLeft(), variables);
-            double right = parseFactor(atom.getRight(), variables);
-
-            switch (op) {
-                case ADD, SUB, MUL, DIV, MOV:
-                    assignment(atom, variables);
-                    break;
-                case TST:
-                    if(!testComparison(left, right, atom.getCmp())) {
-                        AtomOperation previous = i > 0 ? atoms.get(i - 1) : null;
-                        boolean isLoop = previous != null && previous.getOp() == Operation.LBL && (previous.getDest().contains("while") || previous.getDest().contains("for"));
-
-                        if(isLoop) {
-                            // Verify the label matches the test
-                            String labelNumber = previous.getDest().substring(previous.getDest().lastIndexOf("_") + 1);
-
-                            if(atom.getDest().contains(labelNumber)) {
-                                atoms.remove(i - 1);
-                                i--;
-                            }
-                        }
-
-                        while(i < atoms.size() && atoms.get(i).getOp() != Operation.LBL) {
-                            atoms.remove(i);
-                        }
-
-                        if(i < atoms.size()) {
-                            atoms.remove(i);
-                        }
-
-                        // prevent incrementing i
-                        continue;
-                    } else {
-                        i = simulateLoop(atoms, variables, i - 1);
-                    }
-            }
+    // Walks each block backward from the variables live at its end, an atom writing a variable that isn't live
+    // is deleted and its operands aren't marked live, so stores feeding only dead stores go in the same walk
+    private static void removeDeadStores(OptimizationContext context) {
+        AtomList atoms = context.getAtoms();
+        Liveness liveness = context.getLiveness();
 
-            i++;
-        }
-    }
+        for (ControlFlowGraph.BasicBlock block : context.getControlFlowGraph().getBlocks()) {
+            BitSet live = (BitSet) liveness.getLiveOut(block.index()).clone();
 
-    private static int simulateLoop(List<AtomOperation> atoms, HashMap<String, Double> variables, int labelIndex) {
-        AtomOperation beforeLabel = atoms.get(labelIndex);
-        boolean isLoop = beforeLabel != null && beforeLabel.getOp() == Operation.LBL && (beforeLabel.getDest().contains("while") || beforeLabel.getDest().contains("for"));
+            for (int i = block.last(); i >= block.start(); i--) {
+                if (Liveness.defines(atoms, i)) {
+                    int variable = liveness.indexOf(atoms.getResult(i));
 
-        if (!isLoop) {
-            return labelIndex;
-        }
+                    if (!live.get(variable)) {
+                        context.delete(i);
+                        continue;
+                    }
 
-        String labelNumber = beforeLabel.getDest().substring(beforeLabel.getDest().lastIndexOf("_") + 1);
-        AtomOperation test = atoms.get(labelIndex + 1);
-        double left = parseFactor(test.getLeft(), variables);
-        double right = parseFactor(test.getRight(), variables);
-        int i = labelIndex + 2;
-
-        while (i < atoms.size() && testComparison(left, right, test.getCmp())) {
-            if (atoms.get(i).getOp() == Operation.LBL || atoms.get(i).getOp() == Operation.JMP) {
-                if (atoms.get(i).getDest().substring(atoms.get(i).getDest().lastIndexOf("_") + 1).equals(labelNumber)) {
-                    i = labelIndex + 2;
-                    continue;
-                } else if (atoms.get(i).getOp() == Operation.LBL && atoms.get(i).getDest().startsWith("before")) {
-                    i = simulateLoop(atoms, variables, i) + 1;
+                    live.clear(variable);
                 }
-            }
 
-            assignment(atoms.get(i), variables);
-
-            left = parseFactor(test.getLeft(), variables);
-            right = parseFactor(test.getRight(), variables);
-            i++;
+                liveness.use(atoms.getLeft(i), live);
+                liveness.use(atoms.getRight(i), live);
+            }
         }
-
-        return i;
     }
 
-    private static void assignment(AtomOperation atom, HashMap<String, Double> variables) {
-        double left = parseFactor(atom.getLeft(), variables);
-        double right = parseFactor(atom.getRight(), variables);
-
-        switch (atom.getOp()) {
-            case ADD:
-                variables.put(atom.getResult(), left + right);
-                break;
-            case SUB:
-                variables.put(atom.getResult(), left - right);
-                break;
-            case MUL:
-                variables.put(atom.getResult(), left * right);
-                break;
-            case DIV:
-                variables.put(atom.getResult(), left / right);
-                break;
-            case MOV:
-                variables.put(atom.getResult(), left);
-                break;
+    private record Pass(String name, Set<Analysis> requiredAnalyses, Consumer<OptimizationContext> body) implements OptimizationPass {
+        public String getName() {
+            return name;
         }
-    }
-
-    private static boolean testComparison(double left, double right, String cmp) {
-        return switch (cmp) {
-            case "0" -> true;
-            case "1" -> left != right;
-            case "2" -> left >= right;
-            case "3" -> left <= right;
-            case "4" -> left > right;
-            case "5" -> left < right;
-            case "6" -> left == right;
-            default -> false;
-        };
-    }
 
-    private static double parseFactor(String factor, HashMap<String, Double> variables) {
-        if(factor.isEmpty()) return 0;
-        if(Character.isDigit(factor.charAt(0))) return Double.parseDouble(factor);
+        public void run(OptimizationContext context) {
+            body.accept(context);
+        }
 
-        return variables.getOrDefault(factor, 0.0);
+        public Set<Analysis> getRequiredAnalyses() {
+            return requiredAnalyses;
+        }
     }
-
 }
@@ -0,0 +1,215 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+import compiler.common.LabelKind;
+import compiler.common.OperandTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the tokens and atoms of a source between edits, so an edit only re-scans the tokens around it
+ * and only re-parses the top level statements those tokens belong to. Atoms of the other statements
+ * are reused as they are.
+ * <p>
+ * Scanning and parsing, the bulk of a build, track the size of the edit. An edit still copies the whole
+ * source and token buffer, and getAtoms copies the atoms of every statement, so it costs O(file) in plain
+ * array copies on top of that.
+ * <p>
+ * An edit that fails to scan or parse, as most do while someone is typing, leaves the frontend as it was
+ * before the edit. Labels and operands of replaced statements stay in the operand table until it holds as
+ * many unused entries as used ones, then the atoms are moved into a new table and their labels renumbered,
+ * so a long session keeps the table in proportion to the source.
+ * Offsets are byte offsets into the source, which are character offsets for ascii sources.
+ */
+public class IncrementalFrontend {
+    private static final int MIN_COMPACTED_SIZE = 1024;  // Small tables aren't worth moving
+
+    private final Lexer lexer = ScannerProject.getLexer();
+    private final SymbolTable symbols = new SymbolTable();
+    private OperandTable operands = new OperandTable();  // Shared by the atoms of every statement
+    private int compactedSize = 0;  // Operands in use when the table was last compacted
+    private byte[] source;
+    private TokenBuffer tokens;
+    private List<ParsedStatement> statements = new ArrayList<>();
+    private int labelLimit = 0;  // Label numbers below this are in use, re-parsed statements get new ones
+
+    public IncrementalFrontend(String source) throws IOException {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        TokenBuffer scanned = lexer.scan(ByteBuffer.wrap(bytes), symbols);
+
+        commit(bytes, scanned, reparse(scanned, 0, 0, 0, 0));
+    }
+
+    /**
+     * Applies an edit to the source and updates the tokens and atoms
+     * @param offset the offset the edit starts at
+     * @param removedLength the number of bytes removed at the offset
+     * @param insertedText the text inserted at the offset
+     * @return the atoms of the edited source
+     * @throws SyntaxException if the edited source doesn't parse, the frontend keeps the source before the edit
+     */
+    public AtomList edit(int offset, int removedLength, String insertedText) throws IOException {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length) {
+            throw new IndexOutOfBoundsException("Edit of %d bytes at %d is outside the source".formatted(removedLength, offset));
+        }
+
+        byte[] inserted = insertedText.getBytes(StandardCharsets.UTF_8);
+        byte[] edited = new byte[source.length - removedLength + inserted.length];
+
+        System.arraycopy(source, 0, edited, 0, offset);
+        System.arraycopy(inserted, 0, edited, offset, inserted.length);
+        System.arraycopy(source, offset + removedLength, edited, offset + inserted.length, source.length - offset - removedLength);
+
+        Lexer.Rescan rescan = lexer.rescan(tokens, ByteBuffer.wrap(edited), offset, removedLength, inserted.length);
+
+        // A statement also depends on the token after it, the parser looks at it to decide where the statement ends
+        int first = 0;
+        int firstToken = 0;
+
+        while (first < statements.size() && firstToken + statements.get(first).tokenCount() < rescan.firstChanged()) {
+            firstToken += statements.get(first).tokenCount();
+            first++;
+        }
+
+        commit(edited, rescan.tokens(), reparse(rescan.tokens(), first, firstToken, rescan.resume(), rescan.resume() - rescan.previousResume()));
+
+        return getAtoms();
+    }
+
+    /**
+     * Gets the atoms of the whole source
+     * @return the atoms of every statement in order
+     */
+    public AtomList getAtoms() {
+        AtomList atoms = new AtomList(operands);
+
+        for (ParsedStatement statement : statements) {
+            atoms.append(statement.atoms());
+        }
+
+        return atoms;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public String getSource() {
+        return new String(source, StandardCharsets.UTF_8);
+    }
+
+    // Parses statements from the first one that may have changed until a statement ends where a previous one ended.
+    // Nothing is changed until every statement parsed, the new state is handed to commit
+    private Reparse reparse(TokenBuffer tokens, int first, int firstToken, int resume, int tokenShift) {
+        ParserProject parser = new ParserProject(tokens.source(firstToken), operands, labelLimit);
+        List<ParsedStatement> reparsed = new ArrayList<>();
+        int reuseFrom = statements.size();
+        int previousIndex = first;
+        int previousStart = firstToken;
+        int statementStart = firstToken;
+
+        while (parser.parseStatement()) {
+            int statementEnd = firstToken + parser.getPosition();
+            reparsed.add(new ParsedStatement(statementEnd - statementStart, parser.takeAtoms()));
+            statementStart = statementEnd;
+
+            if (statementEnd < resume) {
+                continue;
+            }
+
+            // Past the re-scanned tokens, the rest can be reused once a previous statement started here too
+            int previousEnd = statementEnd - tokenShift;
+
+            while (previousIndex < statements.size() && previousStart < previousEnd) {
+                previousStart += statements.get(previousIndex++).tokenCount();
+            }
+
+            if (previousStart == previousEnd && previousIndex < statements.size()) {
+                reuseFrom = previousIndex;
+                break;
+            }
+        }
+
+        List<ParsedStatement> updated = new ArrayList<>(statements.size() - reuseFrom + first + reparsed.size());
+        updated.addAll(statements.subList(0, first));
+        updated.addAll(reparsed);
+        updated.addAll(statements.subList(reuseFrom, statements.size()));
+
+        return new Reparse(updated, Math.max(labelLimit, parser.getLabelLimit()));
+    }
+
+    private void commit(byte[] source, TokenBuffer tokens, Reparse reparse) {
+        this.source = source;
+        this.tokens = tokens;
+        this.statements = reparse.statements();
+        this.labelLimit = reparse.labelLimit();
+
+        if (operands.size() > Math.max(MIN_COMPACTED_SIZE, 2 * compactedSize)) {
+            compact();
+        }
+    }
+
+    // Moves the atoms into a new operand table holding only what they use, labels are numbered again.
+    // It only runs once the table has doubled, so its cost is spread over the edits that filled it
+    private void compact() {
+        OperandTable compacted = new OperandTable();
+        int[] ids = new int[operands.size()];  // Id of Each Operand in the New Table, NONE Until it is Moved
+        List<ParsedStatement> moved = new ArrayList<>(statements.size());
+
+        Arrays.fill(ids, AtomList.NONE);
+
+        for (ParsedStatement statement : statements) {
+            AtomList atoms = statement.atoms();
+            AtomList copy = new AtomList(compacted, atoms.size());
+
+            for (int i = 0; i < atoms.size(); i++) {
+                copy.add(atoms.getOp(i),
+                        move(atoms.getLeft(i), ids, compacted),
+                        move(atoms.getRight(i), ids, compacted),
+                        move(atoms.getResult(i), ids, compacted),
+                        atoms.getCmp(i),
+                        move(atoms.getDest(i), ids, compacted));
+            }
+
+            moved.add(new ParsedStatement(statement.tokenCount(), copy));
+        }
+
+        // Partners are linked once both labels of a block are in the new table
+        for (int id = 0; id < ids.length; id++) {
+            int partner = operands.partner(id);
+
+            if (ids[id] != AtomList.NONE && partner != AtomList.NONE && ids[partner] != AtomList.NONE) {
+                compacted.pair(ids[id], ids[partner]);
+            }
+        }
+
+        operands = compacted;
+        statements = moved;
+        labelLimit = compacted.size();
+        compactedSize = compacted.size();
+    }
+
+    private int move(int id, int[] ids, OperandTable compacted) {  // Returns the Id of an Operand in the New Table
+        if (id == AtomList.NONE) {
+            return AtomList.NONE;
+        }
+
+        if (ids[id] == AtomList.NONE) {
+            LabelKind kind = operands.labelKind(id);
+
+            // A label is numbered by the id it gets, so numbers stay unique and below the size of the table
+            ids[id] = kind != null ? compacted.internLabel(kind, compacted.size()) : compacted.intern(operands.name(id));
+        }
+
+        return ids[id];
+    }
+
+    private record ParsedStatement(int tokenCount, AtomList atoms) {}
+
+    private record Reparse(List<ParsedStatement> statements, int labelLimit) {}
+}
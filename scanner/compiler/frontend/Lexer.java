@@ -0,0 +1,428 @@
+package compiler.frontend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Runs a generated state machine over source input. A lexer never changes after it is created,
+ * so one instance can be shared by any number of threads. All state of a scan lives in the
+ * token source or buffer the scan produces.
+ */
+public final class Lexer {
+    // The inputs are all ascii values (0-127) -> 128 inputs
+    private static final int INPUTS = 128;
+    // Input is read through a fixed size buffer so memory use does not grow with the file size
+    private static final int CHUNK_SIZE = 8192;
+    // Inputs are only worth splitting into chunks of at least this size for parallel scanning
+    private static final int PARALLEL_CHUNK_SIZE = 1 << 20;
+    private static final int DEAD = LexerTables.DEAD;
+    private static final int START = LexerTables.START;
+
+    // Kinds of character runs a state can consume in whole words
+    private static final byte NO_RUN = 0;
+    private static final byte LETTER_RUN = 1;
+    private static final byte DIGIT_RUN = 2;
+
+    private final byte[] classMap;
+    private final int classCount;
+    private final int[] transitions;
+    private final TokenType[] accept;
+    private final byte[] runKinds;
+
+    public Lexer(LexerTables tables) {
+        // Copied so later changes to the tables can't affect a lexer that is already shared
+        this.classMap = tables.getClassMap().clone();
+        this.classCount = tables.getClassCount();
+        this.transitions = tables.getTransitions().clone();
+        this.accept = tables.getAccept().clone();
+        this.runKinds = new byte[accept.length];
+
+        for (int state = START; state < accept.length; state++) {
+            if (loopsOn(state, 'a', 'z') && loopsOn(state, 'A', 'Z')) {
+                runKinds[state] = LETTER_RUN;
+            } else if (loopsOn(state, '0', '9')) {
+                runKinds[state] = DIGIT_RUN;
+            }
+        }
+    }
+
+    // Checks if a state stays in itself for every character of a range, so a run of them can be consumed at once
+    private boolean loopsOn(int state, char lower, char upper) {
+        for (char ch = lower; ch <= upper; ch++) {
+            if (transition(state, ch) != state) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Opens a token source that only reads from the channel when the next token is requested
+     * @param channel the channel to read the source from
+     * @param symbols the table identifiers and numbers are interned into, owned by the caller's thread
+     * @return a token source over the channel
+     */
+    public TokenSource open(ReadableByteChannel channel, SymbolTable symbols) {
+        return new InputTokenSource(channel, symbols);
+    }
+
+    /**
+     * Scans the whole input of a channel into a compact token buffer
+     * @param channel the channel to read the source from
+     * @param symbols the table identifiers and numbers are interned into, owned by the caller's thread
+     * @return the buffer holding every accepted token
+     */
+    public TokenBuffer scan(ReadableByteChannel channel, SymbolTable symbols) throws IOException {
+        InputTokenSource source = new InputTokenSource(channel, symbols);
+        TokenBuffer tokens = new TokenBuffer(symbols);
+
+        while (source.advance()) {
+            tokens.add(source.type, source.start, source.end, source.symbol);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Scans input that is already in memory, such as a mapped file
+     * @param input the source, read from its position to its limit
+     * @param symbols the table identifiers and numbers are interned into, owned by the caller's thread
+     * @return the buffer holding every accepted token
+     */
+    public TokenBuffer scan(ByteBuffer input, SymbolTable symbols) throws IOException {
+        return scanChunk(input.slice(), 0, symbols, System.out::println);
+    }
+
+    /**
+     * Re-scans an edited source, only lexing from just before the edit until the machine is back in
+     * step with the previous scan. Every token after that point is copied from the previous scan
+     * with its offsets shifted by the size change of the edit.
+     * @param previous the tokens of the source before the edit
+     * @param source the whole source after the edit
+     * @param offset the offset the edit starts at
+     * @param removedLength the number of bytes the edit removed
+     * @param insertedLength the number of bytes the edit inserted
+     * @return the tokens of the edited source and the range of tokens that changed
+     */
+    public Rescan rescan(TokenBuffer previous, ByteBuffer source, int offset, int removedLength, int insertedLength) throws IOException {
+        int shift = insertedLength - removedLength;
+        int editEnd = offset + insertedLength;
+
+        // Tokens ended by a byte before the edit are unchanged, and the machine is in its start state at that byte
+        int firstChanged = previous.indexOfEnd(offset);
+        int restart = firstChanged > 0 ? previous.end(firstChanged - 1) : 0;
+        ByteBuffer input = source.slice();
+        InputTokenSource scanner = new InputTokenSource(null, input.slice(restart, input.limit() - restart), previous.getSymbols(), restart, System.out::println);
+        TokenBuffer tokens = new TokenBuffer(previous.getSymbols());
+        tokens.append(previous, 0, firstChanged, 0);
+
+        int resume = previous.size();
+
+        while (scanner.advance()) {
+            if (scanner.start >= editEnd) {
+                // A token starting past the edit where a previous token started means both scans are in the same state
+                int match = previous.indexOfStart(scanner.start - shift, firstChanged);
+
+                if (match >= 0) {
+                    resume = match;
+                    break;
+                }
+            }
+
+            tokens.add(scanner.type, scanner.start, scanner.end, scanner.symbol);
+        }
+
+        int changedEnd = tokens.size();
+        tokens.append(previous, resume, previous.size(), shift);
+
+        return new Rescan(tokens, firstChanged, resume, changedEnd);
+    }
+
+    /**
+     * Scans input that is already in memory by splitting it into chunks that are scanned in parallel.
+     * Chunks are only split after whitespace, ';', '{' or '}', none of which can continue a token,
+     * so the tokens and diagnostics are the same as a sequential scan's.
+     * @param input the source, read from its position to its limit
+     * @param symbols the table identifiers and numbers are interned into, owned by the caller's thread
+     * @param pool the pool the chunks are scanned on
+     * @return the buffer holding every accepted token, in source order
+     */
+    public TokenBuffer scanParallel(ByteBuffer input, SymbolTable symbols, ForkJoinPool pool) throws IOException {
+        ByteBuffer source = input.slice();
+        List<ForkJoinTask<ScannedChunk>> tasks = new ArrayList<>();
+        int chunkStart = 0;
+
+        while (chunkStart < source.limit()) {
+            int chunkEnd = splitPoint(source, chunkStart + PARALLEL_CHUNK_SIZE);
+            ByteBuffer chunk = source.slice(chunkStart, chunkEnd - chunkStart);
+            int offset = chunkStart;
+
+            tasks.add(pool.submit(() -> {
+                SymbolTable chunkSymbols = new SymbolTable();
+                List<String> messages = new ArrayList<>();
+
+                return new ScannedChunk(scanChunk(chunk, offset, chunkSymbols, messages::add), messages);
+            }));
+
+            chunkStart = chunkEnd;
+        }
+
+        TokenBuffer tokens = new TokenBuffer(symbols);
+
+        // Joined in order so tokens and diagnostics come out as a sequential scan would produce them
+        for (ForkJoinTask<ScannedChunk> task : tasks) {
+            ScannedChunk chunk = task.join();
+
+            chunk.messages().forEach(System.out::println);
+            tokens.append(chunk.tokens());
+        }
+
+        return tokens;
+    }
+
+    private TokenBuffer scanChunk(ByteBuffer chunk, int offset, SymbolTable symbols, Consumer<String> diagnostics) throws IOException {
+        InputTokenSource source = new InputTokenSource(null, chunk, symbols, offset, diagnostics);
+        TokenBuffer tokens = new TokenBuffer(symbols);
+
+        while (source.advance()) {
+            tokens.add(source.type, source.start, source.end, source.symbol);
+        }
+
+        return tokens;
+    }
+
+    // Finds the first position at or after the target that directly follows a byte no token can continue past
+    private static int splitPoint(ByteBuffer source, int target) {
+        if (target >= source.limit()) {
+            return source.limit();
+        }
+
+        for (int i = target - 1; i < source.limit(); i++) {
+            int ch = source.get(i);
+
+            if (isWhitespace(ch) || ch == ';' || ch == '{' || ch == '}') {
+                return i + 1;
+            }
+        }
+
+        return source.limit();
+    }
+
+    private int transition(int state, int ch) {
+        return transitions[state * classCount + classMap[ch]];
+    }
+
+    // Line breaks and tabs separate tokens the same way spaces do
+    private static boolean isWhitespace(int ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r';
+    }
+
+    private final class InputTokenSource implements TokenSource {
+        private final ReadableByteChannel channel;  // Null when the buffer already holds all of the input
+        private final ByteBuffer buffer;
+        private final SymbolTable symbols;
+        private final Consumer<String> diagnostics;
+        private byte[] text = new byte[64];  // Text of the token being scanned, reused for every token
+        private int length = 0;
+        private int state = START;
+        private int position;  // Offset in the source of the next byte to be read
+        private int tokenStart;  // Offset in the source of the first byte of the token being scanned
+        private boolean endOfInput = false;
+
+        // Fields of the most recently scanned token
+        private TokenType type;
+        private int start;
+        private int end;
+        private int symbol;
+
+        private InputTokenSource(ReadableByteChannel channel, SymbolTable symbols) {
+            this(channel, ByteBuffer.allocate(CHUNK_SIZE).flip(), symbols, 0, System.out::println);
+        }
+
+        private InputTokenSource(ReadableByteChannel channel, ByteBuffer buffer, SymbolTable symbols, int position, Consumer<String> diagnostics) {
+            this.channel = channel;
+            this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.symbols = symbols;
+            this.position = position;
+            this.diagnostics = diagnostics;
+            this.endOfInput = channel == null;
+        }
+
+        @Override
+        public Token next() throws IOException {
+            if (!advance()) {
+                return null;
+            }
+
+            return symbol < 0 ? Token.of(type) : symbols.token(symbol);
+        }
+
+        // Scans the next accepted token into the token fields, returns false at the end of the input
+        private boolean advance() throws IOException {
+            while (true) {
+                if (!buffer.hasRemaining() && !fill()) {
+                    return finish();
+                }
+
+                // Runs of letters, digits and spaces are consumed a word at a time, the table only handles their ends
+                if (buffer.remaining() >= Swar.WORD_BYTES && consumeRun() && !buffer.hasRemaining()) {
+                    continue;
+                }
+
+                int ch = buffer.get() & 0xFF;
+                position++;
+
+                if (ch >= INPUTS) {
+                    continue;
+                }
+
+                int oldState = state;
+                state = transition(oldState, ch);
+
+                if (state != DEAD) {
+                    append(ch);
+                    continue;
+                }
+
+                boolean accepted = length > 0 && accept(oldState, position - 1);
+
+                length = 0;
+                state = transition(START, ch);
+
+                if (state != DEAD) {
+                    append(ch);
+                } else {
+                    state = START;
+
+                    if (!isWhitespace(ch)) {
+                        diagnostics.accept("Unaccepted character '" + (char) ch + "'");
+                    }
+                }
+
+                if (accepted) {
+                    return true;
+                }
+            }
+        }
+
+        // Consumes the run of characters the current state loops on, returns true if any were consumed
+        private boolean consumeRun() {
+            byte runKind = runKinds[state];
+            boolean skipSpaces = state == START && length == 0;
+
+            if (runKind == NO_RUN && !skipSpaces) {
+                return false;
+            }
+
+            int from = buffer.position();
+            int run = 0;
+
+            while (from + run + Swar.WORD_BYTES <= buffer.limit()) {
+                long word = buffer.getLong(from + run);
+                int matched = switch (runKind) {
+                    case LETTER_RUN -> Swar.letterRun(word);
+                    case DIGIT_RUN -> Swar.digitRun(word);
+                    default -> Swar.spaceRun(word);
+                };
+
+                run += matched;
+
+                if (matched < Swar.WORD_BYTES) {
+                    break;
+                }
+            }
+
+            if (run == 0) {
+                return false;
+            }
+
+            if (skipSpaces) {
+                buffer.position(from + run);
+            } else {
+                if (length + run > text.length) {
+                    text = Arrays.copyOf(text, Math.max(text.length * 2, length + run));
+                }
+
+                buffer.get(text, length, run);
+                length += run;
+            }
+
+            position += run;
+
+            return true;
+        }
+
+        // Reads the next chunk of the channel, returns false once the channel is exhausted
+        private boolean fill() throws IOException {
+            while (!endOfInput && !buffer.hasRemaining()) {
+                buffer.clear();
+                endOfInput = channel.read(buffer) == -1;
+                buffer.flip();
+            }
+
+            return buffer.hasRemaining();
+        }
+
+        private boolean finish() {
+            if (length == 0) {
+                return false;
+            }
+
+            boolean accepted = accept(state, position);
+            length = 0;
+            state = START;
+
+            return accepted;
+        }
+
+        private void append(int ch) {
+            if (length == 0) {
+                tokenStart = position - 1;
+            }
+
+            if (length == text.length) {
+                text = Arrays.copyOf(text, length * 2);
+            }
+
+            text[length++] = (byte) ch;
+        }
+
+        // Fills the token fields from the scanned text, only identifiers and numbers are interned
+        private boolean accept(int state, int end) {
+            TokenType type = accept[state];
+
+            if (type == null) {
+                diagnostics.accept("Unaccepted token '" + new String(text, 0, length, StandardCharsets.US_ASCII) + "'");
+                return false;
+            }
+
+            this.type = type;
+            this.start = tokenStart;
+            this.end = end;
+            this.symbol = type.getSpelling() == null ? symbols.intern(text, length, type) : -1;
+
+            return true;
+        }
+    }
+
+    private record ScannedChunk(TokenBuffer tokens, List<String> messages) {}
+
+    /**
+     * The result of re-scanning an edited source
+     * @param tokens the tokens of the edited source
+     * @param firstChanged the index of the first token that may differ, the same in both scans
+     * @param previousResume the index in the previous scan of the first token that was reused
+     * @param resume the index in the new scan of the first token that was reused
+     */
+    public record Rescan(TokenBuffer tokens, int firstChanged, int previousResume, int resume) {}
+}
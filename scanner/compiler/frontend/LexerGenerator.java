@@ -0,0 +1,507 @@
+package compiler.frontend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the scanner's state machine from token definitions.
+ * The definitions are compiled into an NFA, turned into a DFA by subset construction, minimized,
+ * and the 128 ascii input columns are compressed into equivalence classes.
+ * When two definitions match the same text the one added first wins, so keywords have to be added
+ * before the identifier pattern.
+ * Patterns support literal characters, escapes (\.), classes ([a-z], [^0-9]), grouping,
+ * alternation (|) and the repetitions *, + and ?.
+ */
+public class LexerGenerator {
+    private static final int INPUTS = 128;
+
+    private final List<NfaState> nfaStates = new ArrayList<>();
+    private final NfaState start = newState();
+    private int priority = 0;
+
+    /**
+     * Adds keywords or punctuation, each matched by the fixed spelling of its type
+     * @param types the types to add, in order of priority
+     */
+    public void addLiterals(TokenType... types) {
+        for (TokenType type : types) {
+            if (type.getSpelling() == null) {
+                throw new IllegalArgumentException("%s has no fixed spelling".formatted(type));
+            }
+
+            Fragment fragment = null;
+
+            for (char ch : type.getSpelling().toCharArray()) {
+                BitSet chars = new BitSet(INPUTS);
+                chars.set(ch);
+                fragment = fragment == null ? charSet(chars) : concat(fragment, charSet(chars));
+            }
+
+            addFragment(type, fragment);
+        }
+    }
+
+    /**
+     * Adds a token matched by a pattern
+     * @param type the type of the token
+     * @param pattern the pattern the token's text matches
+     */
+    public void addPattern(TokenType type, String pattern) {
+        addFragment(type, new PatternParser(pattern).parse());
+    }
+
+    /**
+     * Builds the minimized and compressed state machine for every definition added so far
+     * @return the tables the scanner runs on
+     */
+    public LexerTables generate() {
+        int[] nfaClassMap = new int[INPUTS];
+        int[] representatives = computeInputClasses(nfaClassMap);
+        int nfaClassCount = representatives.length;
+
+        // Subset construction, the empty set is the dead state
+        Map<BitSet, Integer> stateIds = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        List<int[]> transitions = new ArrayList<>();
+        Deque<Integer> worklist = new ArrayDeque<>();
+
+        BitSet dead = new BitSet();
+        BitSet initial = closure(singleton(start));
+
+        for (BitSet set : List.of(dead, initial)) {
+            if (!stateIds.containsKey(set)) {
+                stateIds.put(set, sets.size());
+                worklist.add(sets.size());
+                sets.add(set);
+                transitions.add(new int[nfaClassCount]);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            int state = worklist.poll();
+            BitSet set = sets.get(state);
+
+            for (int inputClass = 0; inputClass < nfaClassCount; inputClass++) {
+                BitSet target = closure(move(set, representatives[inputClass]));
+                Integer targetId = stateIds.get(target);
+
+                if (targetId == null) {
+                    targetId = sets.size();
+                    stateIds.put(target, targetId);
+                    worklist.add(targetId);
+                    sets.add(target);
+                    transitions.add(new int[nfaClassCount]);
+                }
+
+                transitions.get(state)[inputClass] = targetId;
+            }
+        }
+
+        TokenType[] accept = new TokenType[sets.size()];
+
+        for (int state = 0; state < sets.size(); state++) {
+            accept[state] = acceptOf(sets.get(state));
+        }
+
+        int[] blocks = minimize(transitions, accept, nfaClassCount);
+
+        return compress(transitions, accept, blocks, stateIds.get(dead), stateIds.get(initial), nfaClassMap, nfaClassCount);
+    }
+
+    // Groups the input characters that every NFA edge treats the same, returns one character of each group
+    private int[] computeInputClasses(int[] classMap) {
+        Map<BitSet, Integer> classIds = new HashMap<>();
+        List<Integer> representatives = new ArrayList<>();
+
+        for (int ch = 0; ch < INPUTS; ch++) {
+            BitSet signature = new BitSet();
+
+            for (NfaState state : nfaStates) {
+                if (state.chars != null && state.chars.get(ch)) {
+                    signature.set(state.id);
+                }
+            }
+
+            Integer inputClass = classIds.get(signature);
+
+            if (inputClass == null) {
+                inputClass = representatives.size();
+                classIds.put(signature, inputClass);
+                representatives.add(ch);
+            }
+
+            classMap[ch] = inputClass;
+        }
+
+        return representatives.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Moore partition refinement, returns the block every DFA state belongs to
+    private static int[] minimize(List<int[]> transitions, TokenType[] accept, int classCount) {
+        int stateCount = accept.length;
+        int[] blocks = new int[stateCount];
+
+        for (int state = 0; state < stateCount; state++) {
+            blocks[state] = accept[state] == null ? 0 : accept[state].ordinal() + 1;
+        }
+
+        int blockCount = -1;
+
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] refined = new int[stateCount];
+
+            for (int state = 0; state < stateCount; state++) {
+                List<Integer> signature = new ArrayList<>(classCount + 1);
+                signature.add(blocks[state]);
+
+                for (int target : transitions.get(state)) {
+                    signature.add(blocks[target]);
+                }
+
+                refined[state] = signatures.computeIfAbsent(signature, key -> signatures.size());
+            }
+
+            blocks = refined;
+
+            if (signatures.size() == blockCount) {
+                return blocks;
+            }
+
+            blockCount = signatures.size();
+        }
+    }
+
+    // Numbers the minimized states (dead first, start second) and merges identical input columns
+    private static LexerTables compress(List<int[]> transitions, TokenType[] accept, int[] blocks, int dead, int initial, int[] nfaClassMap, int nfaClassCount) {
+        if (blocks[dead] == blocks[initial]) {
+            throw new IllegalStateException("No tokens have been defined");
+        }
+
+        int[] stateOfBlock = new int[accept.length];
+        Arrays.fill(stateOfBlock, -1);
+        stateOfBlock[blocks[dead]] = LexerTables.DEAD;
+        stateOfBlock[blocks[initial]] = LexerTables.START;
+
+        List<Integer> blockStates = new ArrayList<>(List.of(dead, initial));
+
+        for (int state = 0; state < accept.length; state++) {
+            if (stateOfBlock[blocks[state]] < 0) {
+                stateOfBlock[blocks[state]] = blockStates.size();
+                blockStates.add(state);
+            }
+        }
+
+        int stateCount = blockStates.size();
+        Map<List<Integer>, Integer> columnIds = new HashMap<>();
+        int[] classOfNfaClass = new int[nfaClassCount];
+
+        for (int inputClass = 0; inputClass < nfaClassCount; inputClass++) {
+            List<Integer> column = new ArrayList<>(stateCount);
+
+            for (int state : blockStates) {
+                column.add(stateOfBlock[blocks[transitions.get(state)[inputClass]]]);
+            }
+
+            classOfNfaClass[inputClass] = columnIds.computeIfAbsent(column, key -> columnIds.size());
+        }
+
+        int classCount = columnIds.size();
+        byte[] classMap = new byte[INPUTS];
+        int[] table = new int[stateCount * classCount];
+        TokenType[] stateAccept = new TokenType[stateCount];
+
+        for (int ch = 0; ch < INPUTS; ch++) {
+            classMap[ch] = (byte) classOfNfaClass[nfaClassMap[ch]];
+        }
+
+        for (int state = 0; state < stateCount; state++) {
+            int original = blockStates.get(state);
+            stateAccept[state] = accept[original];
+
+            for (int inputClass = 0; inputClass < nfaClassCount; inputClass++) {
+                int target = stateOfBlock[blocks[transitions.get(original)[inputClass]]];
+                table[state * classCount + classOfNfaClass[inputClass]] = target;
+            }
+        }
+
+        return new LexerTables(classMap, classCount, table, stateAccept);
+    }
+
+    private TokenType acceptOf(BitSet set) {
+        NfaState best = null;
+
+        for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)) {
+            NfaState state = nfaStates.get(id);
+
+            if (state.accept != null && (best == null || state.priority < best.priority)) {
+                best = state;
+            }
+        }
+
+        return best == null ? null : best.accept;
+    }
+
+    private BitSet move(BitSet set, int ch) {
+        BitSet result = new BitSet();
+
+        for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)) {
+            NfaState state = nfaStates.get(id);
+
+            if (state.chars != null && state.chars.get(ch)) {
+                result.set(state.target.id);
+            }
+        }
+
+        return result;
+    }
+
+    private BitSet closure(BitSet set) {
+        BitSet result = (BitSet) set.clone();
+        Deque<Integer> pending = new ArrayDeque<>();
+        set.stream().forEach(pending::add);
+
+        while (!pending.isEmpty()) {
+            for (NfaState next : nfaStates.get(pending.poll()).epsilon) {
+                if (!result.get(next.id)) {
+                    result.set(next.id);
+                    pending.add(next.id);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static BitSet singleton(NfaState state) {
+        BitSet set = new BitSet();
+        set.set(state.id);
+
+        return set;
+    }
+
+    private void addFragment(TokenType type, Fragment fragment) {
+        start.epsilon.add(fragment.start);
+        fragment.end.accept = type;
+        fragment.end.priority = priority++;
+    }
+
+    private NfaState newState() {
+        NfaState state = new NfaState(nfaStates.size());
+        nfaStates.add(state);
+
+        return state;
+    }
+
+    private Fragment charSet(BitSet chars) {
+        NfaState from = newState();
+        NfaState to = newState();
+        from.chars = chars;
+        from.target = to;
+
+        return new Fragment(from, to);
+    }
+
+    private Fragment concat(Fragment first, Fragment second) {
+        first.end.epsilon.add(second.start);
+
+        return new Fragment(first.start, second.end);
+    }
+
+    private Fragment alternate(Fragment first, Fragment second) {
+        NfaState from = newState();
+        NfaState to = newState();
+        from.epsilon.add(first.start);
+        from.epsilon.add(second.start);
+        first.end.epsilon.add(to);
+        second.end.epsilon.add(to);
+
+        return new Fragment(from, to);
+    }
+
+    private Fragment repeat(Fragment fragment, char operator) {
+        NfaState from = newState();
+        NfaState to = newState();
+        from.epsilon.add(fragment.start);
+        fragment.end.epsilon.add(to);
+
+        if (operator != '+') {
+            from.epsilon.add(to);
+        }
+
+        if (operator != '?') {
+            fragment.end.epsilon.add(fragment.start);
+        }
+
+        return new Fragment(from, to);
+    }
+
+    private static class NfaState {
+        private final int id;
+        private final List<NfaState> epsilon = new ArrayList<>();
+        private BitSet chars;  // Characters of the one non-epsilon edge, if the state has one
+        private NfaState target;
+        private TokenType accept;
+        private int priority;
+
+        private NfaState(int id) {
+            this.id = id;
+        }
+    }
+
+    private record Fragment(NfaState start, NfaState end) {}
+
+    private class PatternParser {
+        private final String pattern;
+        private int position = 0;
+
+        private PatternParser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        private Fragment parse() {
+            Fragment fragment = alternation();
+
+            if (position < pattern.length()) {
+                throw error("Unexpected '%s'".formatted(pattern.charAt(position)));
+            }
+
+            return fragment;
+        }
+
+        private Fragment alternation() {
+            Fragment fragment = sequence();
+
+            while (accept('|')) {
+                fragment = alternate(fragment, sequence());
+            }
+
+            return fragment;
+        }
+
+        private Fragment sequence() {
+            Fragment fragment = null;
+
+            while (position < pattern.length() && pattern.charAt(position) != '|' && pattern.charAt(position) != ')') {
+                Fragment next = repetition();
+                fragment = fragment == null ? next : concat(fragment, next);
+            }
+
+            if (fragment == null) {
+                NfaState empty = newState();
+                return new Fragment(empty, empty);
+            }
+
+            return fragment;
+        }
+
+        private Fragment repetition() {
+            Fragment fragment = atom();
+
+            while (position < pattern.length() && "*+?".indexOf(pattern.charAt(position)) >= 0) {
+                fragment = repeat(fragment, pattern.charAt(position++));
+            }
+
+            return fragment;
+        }
+
+        private Fragment atom() {
+            char ch = pattern.charAt(position++);
+
+            switch (ch) {
+                case '(' -> {
+                    Fragment fragment = alternation();
+
+                    if (!accept(')')) {
+                        throw error("Missing ')'");
+                    }
+
+                    return fragment;
+                }
+                case '[' -> {
+                    return charSet(characterClass());
+                }
+                case '*', '+', '?' -> throw error("Nothing to repeat");
+                default -> {
+                    BitSet chars = new BitSet(INPUTS);
+                    chars.set(ch == '\\' ? escaped() : checkAscii(ch));
+
+                    return charSet(chars);
+                }
+            }
+        }
+
+        private BitSet characterClass() {
+            BitSet chars = new BitSet(INPUTS);
+            boolean negated = accept('^');
+
+            while (!accept(']')) {
+                int lower = classCharacter();
+
+                if (pattern.startsWith("-", position) && position + 1 < pattern.length() && pattern.charAt(position + 1) != ']') {
+                    position++;
+                    int upper = classCharacter();
+
+                    if (upper < lower) {
+                        throw error("Invalid range");
+                    }
+
+                    chars.set(lower, upper + 1);
+                } else {
+                    chars.set(lower);
+                }
+            }
+
+            if (negated) {
+                chars.flip(0, INPUTS);
+            }
+
+            return chars;
+        }
+
+        private int classCharacter() {
+            if (position >= pattern.length()) {
+                throw error("Missing ']'");
+            }
+
+            char ch = pattern.charAt(position++);
+
+            return ch == '\\' ? escaped() : checkAscii(ch);
+        }
+
+        private int escaped() {
+            if (position >= pattern.length()) {
+                throw error("Dangling '\\'");
+            }
+
+            return checkAscii(pattern.charAt(position++));
+        }
+
+        private int checkAscii(char ch) {
+            if (ch >= INPUTS) {
+                throw error("Only ascii characters are supported");
+            }
+
+            return ch;
+        }
+
+        private boolean accept(char ch) {
+            if (position < pattern.length() && pattern.charAt(position) == ch) {
+                position++;
+                return true;
+            }
+
+            return false;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("%s in pattern \"%s\" at %d".formatted(message, pattern, position));
+        }
+    }
+}
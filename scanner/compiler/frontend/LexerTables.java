@@ -0,0 +1,70 @@
+package compiler.frontend;
+
+/**
+ * The scanner's state machine in compressed form. Input characters are first mapped to an
+ * equivalence class, and the transition table only has one column per class.
+ * State 0 is the dead state (no transition) and state 1 is the start state.
+ */
+public class LexerTables {
+    public static final int DEAD = 0;
+    public static final int START = 1;
+
+    private final byte[] classMap;
+    private final int classCount;
+    private final int[] transitions;
+    private final TokenType[] accept;
+
+    public LexerTables(byte[] classMap, int classCount, int[] transitions, TokenType[] accept) {
+        this.classMap = classMap;
+        this.classCount = classCount;
+        this.transitions = transitions;
+        this.accept = accept;
+    }
+
+    /**
+     * Gets the state the machine moves to
+     * @param state the current state
+     * @param ch an ascii character
+     * @return the next state, or DEAD if the character can't continue the token
+     */
+    public int next(int state, int ch) {
+        return transitions[state * classCount + classMap[ch]];
+    }
+
+    /**
+     * Gets the token type of a state
+     * @param state the state the machine stopped in
+     * @return the type of token the state accepts, or null if it doesn't accept
+     */
+    public TokenType accept(int state) {
+        return accept[state];
+    }
+
+    /**
+     * Gets the equivalence class of every ascii character
+     * @return a map from character to the column of the transition table
+     */
+    public byte[] getClassMap() {
+        return classMap;
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Gets the transition table, the next state for a state and class is at state * classCount + class
+     * @return the flattened transition table
+     */
+    public int[] getTransitions() {
+        return transitions;
+    }
+
+    public TokenType[] getAccept() {
+        return accept;
+    }
+
+    public int getStateCount() {
+        return accept.length;
+    }
+}
@@ -0,0 +1,121 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The variables that are live at the start and end of every block, those whose current value may still be read
+ * before it is overwritten. Solved backward over the ControlFlowGraph by the DataflowSolver. Only variables are
+ * facts, numbered densely in the order they first appear, as constants and labels far outnumber them in large
+ * programs. The memory left behind when the program halts is its output, so every variable is live where the
+ * program ends.
+ */
+public final class Liveness {
+    private final ControlFlowGraph graph;
+    private final int[] indexes;  // Fact Index of Each Operand Id, -1 for Constants, Labels and Unused Operands
+    private final DataflowSolver.Result result;
+
+    /**
+     * Solves liveness for the atoms of a graph
+     * @param graph the blocks of the program
+     */
+    public Liveness(ControlFlowGraph graph) {
+        AtomList atoms = graph.getAtoms();
+        int count = 0;
+
+        this.graph = graph;
+        this.indexes = new int[atoms.getOperands().size()];
+        Arrays.fill(indexes, -1);
+
+        for (int i = 0; i < atoms.size(); i++) {
+            if (defines(atoms, i)) {
+                count = number(atoms.getResult(i), count);
+            }
+
+            count = number(atoms.getLeft(i), count);
+            count = number(atoms.getRight(i), count);
+        }
+
+        BitSet[] gen = new BitSet[graph.size()];
+        BitSet[] kill = new BitSet[graph.size()];
+        BitSet all = new BitSet(count);
+
+        all.set(0, count);
+
+        for (ControlFlowGraph.BasicBlock block : graph.getBlocks()) {
+            gen[block.index()] = new BitSet();
+            kill[block.index()] = new BitSet();
+
+            // Walked backward, a use above a definition in the same block is exposed and one below it is not
+            for (int i = block.last(); i >= block.start(); i--) {
+                if (defines(atoms, i)) {
+                    gen[block.index()].clear(indexes[atoms.getResult(i)]);
+                    kill[block.index()].set(indexes[atoms.getResult(i)]);
+                }
+
+                use(atoms.getLeft(i), gen[block.index()]);
+                use(atoms.getRight(i), gen[block.index()]);
+            }
+        }
+
+        this.result = DataflowSolver.solve(graph, DataflowSolver.genKill(DataflowSolver.Direction.BACKWARD,
+                DataflowSolver.Meet.UNION, count, gen, kill, all));
+    }
+
+    private int number(int operand, int count) {  // Gives a Variable the Next Fact Index Unless it Has One -> Returns the Count
+        if (operand == AtomList.NONE || graph.getAtoms().getOperands().isConstant(operand) || indexes[operand] >= 0) {
+            return count;
+        }
+
+        indexes[operand] = count;
+
+        return count + 1;
+    }
+
+    /**
+     * Checks whether an atom writes a variable
+     * @param atoms the atoms of the program
+     * @param index the index of the atom
+     * @return true for arithmetic and moves with a result
+     */
+    public static boolean defines(AtomList atoms, int index) {
+        return switch (atoms.getOp(index)) {
+            case ADD, SUB, MUL, DIV, NEG, MOV -> atoms.getResult(index) != AtomList.NONE
+                    && !atoms.getOperands().isConstant(atoms.getResult(index));
+            case TST, JMP, LBL -> false;
+        };
+    }
+
+    /**
+     * Gets the fact index of a variable, the bit standing for it in the live sets
+     * @param operand the operand id
+     * @return the index, -1 if the operand isn't a variable of the program
+     */
+    public int indexOf(int operand) {
+        return operand == AtomList.NONE || operand >= indexes.length ? -1 : indexes[operand];
+    }
+
+    /**
+     * Marks an operand live if it is a variable
+     * @param operand the operand id, constants and NONE are left out
+     * @param live the live variables by fact index
+     */
+    public void use(int operand, BitSet live) {
+        int index = indexOf(operand);
+
+        if (index >= 0) {
+            live.set(index);
+        }
+    }
+
+    /**
+     * Gets the variables live at the end of a block, the set is shared and must not be changed
+     * @param block the index of the block
+     * @return the live variables by fact index
+     */
+    public BitSet getLiveOut(int block) {
+        return result.exit(block);
+    }
+}
@@ -0,0 +1,90 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Set;
+
+/**
+ * The atoms being optimized and the analyses of them that are still valid. Analyses are computed the first
+ * time a pass asks for them and kept until a pass that changed the atoms invalidates them.
+ * Passes delete atoms by marking them, the marked atoms stay in place with their indexes unchanged until the
+ * pass is over and are then removed in one sweep, so deleting a large dead region costs linear time.
+ */
+public class OptimizationContext {
+    private final AtomList atoms;
+    private final EnumMap<Analysis, Object> analyses = new EnumMap<>(Analysis.class);
+    private final BitSet deleted = new BitSet();
+    private int rewritten = 0;
+
+    public OptimizationContext(AtomList atoms) {
+        this.atoms = atoms;
+    }
+
+    public AtomList getAtoms() {
+        return atoms;
+    }
+
+    public ControlFlowGraph getControlFlowGraph() {
+        return (ControlFlowGraph) analyses.computeIfAbsent(Analysis.CONTROL_FLOW_GRAPH, analysis -> new ControlFlowGraph(atoms));
+    }
+
+    public Liveness getLiveness() {
+        return (Liveness) analyses.computeIfAbsent(Analysis.LIVENESS, analysis -> new Liveness(getControlFlowGraph()));
+    }
+
+    /**
+     * Marks an atom to be removed once the pass is over
+     * @param index the index of the atom
+     */
+    public void delete(int index) {
+        deleted.set(index);
+    }
+
+    /**
+     * Marks a range of atoms to be removed once the pass is over
+     * @param from the index of the first atom
+     * @param to the index after the last atom
+     */
+    public void delete(int from, int to) {
+        deleted.set(from, to);
+    }
+
+    /**
+     * Records atoms a pass changed without removing them
+     * @param count the number of atoms changed
+     */
+    public void rewrote(int count) {
+        rewritten += count;
+    }
+
+    boolean isComputed(Analysis analysis) {
+        return analyses.containsKey(analysis);
+    }
+
+    void compute(Analysis analysis) {
+        switch (analysis) {
+            case CONTROL_FLOW_GRAPH -> getControlFlowGraph();
+            case LIVENESS -> getLiveness();
+        }
+    }
+
+    void invalidate(Set<Analysis> invalidated) {
+        invalidated.forEach(analyses::remove);
+    }
+
+    int compact() {  // Removes the Marked Atoms -> Returns How Many
+        int removed = atoms.removeAll(deleted);
+        deleted.clear();
+
+        return removed;
+    }
+
+    int takeRewritten() {
+        int count = rewritten;
+        rewritten = 0;
+
+        return count;
+    }
+}
@@ -0,0 +1,36 @@
+package compiler.frontend;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * One transformation of the atoms that the PassManager can run, repeat and measure.
+ * A pass deletes atoms through OptimizationContext.delete and reports every atom it changes in place through
+ * OptimizationContext.rewrote, the manager tells from both whether the pass changed anything.
+ */
+public interface OptimizationPass {
+    /**
+     * @return the name the pass is reported under
+     */
+    String getName();
+
+    /**
+     * Changes the atoms of the context
+     * @param context the atoms and the analyses of them
+     */
+    void run(OptimizationContext context);
+
+    /**
+     * @return the analyses the manager computes before the pass runs, so their time isn't counted as the pass's
+     */
+    default Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.noneOf(Analysis.class);
+    }
+
+    /**
+     * @return the analyses that no longer hold once the pass changed the atoms
+     */
+    default Set<Analysis> getInvalidatedAnalyses() {
+        return EnumSet.allOf(Analysis.class);
+    }
+}
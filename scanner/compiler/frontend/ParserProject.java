@@ -5,28 +5,59 @@
 
 package compiler.frontend;
 
-import compiler.common.AtomOperation;
+import compiler.common.AtomList;
+import compiler.common.Comparison;
+import compiler.common.LabelKind;
+import compiler.common.OperandTable;
 import compiler.common.Operation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ParserProject {
-    private final LinkedList<Token> tokens;
-    private final LinkedList<AtomOperation> atomQueue = new LinkedList<>();
+    private static final int PUBLISH_THRESHOLD = 256;  // Fewest Finished Atoms Handed to a Sink at Once
+
+    private final TokenSource tokens;
+    private final OperandTable operands;
+    private AtomList atomQueue;
     private Token currentToken;  // Current Token being Processed
+    private int position = -1;  // Index of the Current Token in the Input
+    private int labelBase;  // Added to Label Numbers so Labels Stay Unique After Atoms are Taken
+    private int labelLimit;  // Every Label Number Generated is Below This
+    private final ArrayDeque<Integer> pendingTests = new ArrayDeque<>();  // Absolute Indices of the TSTs of Open Ifs, Innermost First
+    private Consumer<AtomList> sink;  // Receives Finished Atoms While Parsing, Null Unless Streaming
 
     public ParserProject(List<Token> tokens) {
-        this.tokens = new LinkedList<>(tokens);
+        this(TokenSource.of(tokens));
+    }
+
+    public ParserProject(TokenSource tokens) {  // Tokens are Pulled from the Source Only as the Parser Needs Them
+        this(tokens, 0);
+    }
+
+    public ParserProject(TokenSource tokens, int labelBase) {  // Label Numbers Start at labelBase
+        this(tokens, new OperandTable(), labelBase);
+    }
+
+    public ParserProject(TokenSource tokens, OperandTable operands, int labelBase) {  // Atoms Intern Their Operands in the Given Table
+        this.tokens = tokens;
+        this.operands = operands;
+        this.atomQueue = new AtomList(operands);
+        this.labelBase = labelBase;
+        this.labelLimit = labelBase;
         advance();
     }
 
     private void advance() {  // Advances to Next Token in Input Stream
-        if (!tokens.isEmpty()) {
-            currentToken = tokens.pop();
-        } else {
-            currentToken = null;
+        try {
+            currentToken = tokens.next();
+            position++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -40,15 +71,15 @@ public class ParserProject {
     }
 
     private void reject(TokenType... expectedTypes) {
+        String found = currentToken == null ? "end of input" : currentToken.toString();
+
         if (expectedTypes.length == 0) {
-            System.out.printf("Unexpected token: %s%n", currentToken.toString());
+            throw new SyntaxException("Unexpected token: %s".formatted(found));
         } else if (expectedTypes.length == 1) {
-            System.out.println("Expected " + expectedTypes[0] + " but found " + currentToken.toString());
+            throw new SyntaxException("Expected " + expectedTypes[0] + " but found " + found);
         } else {
-            System.out.printf("Expected one of %s but found %s%n", String.join(", ", Arrays.stream(expectedTypes).map(Enum::toString).toArray(String[]::new)), currentToken.toString());
+            throw new SyntaxException("Expected one of %s but found %s".formatted(String.join(", ", Arrays.stream(expectedTypes).map(Enum::toString).toArray(String[]::new)), found));
         }
-
-        System.exit(1);
     }
 
     private boolean expect(TokenType type) {  //  If Token Doesn't Match Expected Type -> Throws Error
@@ -63,7 +94,7 @@ public class ParserProject {
         return currentToken != null && currentToken.type() == type;
     }
 
-    public List<AtomOperation> parse() {  // Start Parsing -> Returns List of Generated Atoms
+    public AtomList parse() {  // Start Parsing -> Returns List of Generated Atoms
         statements();
 
         if (currentToken != null) {
@@ -73,54 +104,148 @@ public class ParserProject {
         return atomQueue;
     }
 
-    private boolean block() {
-        return expect(TokenType.OPENING_CURLY_BRACKET) &&
-                statements() &&
-                expect(TokenType.CLOSING_CURLY_BRACKET);
+    /**
+     * Parses the input and streams the atoms, each batch is handed to the sink once no open if can still patch it
+     * @param sink receives the atoms in order
+     */
+    public void parse(Consumer<AtomList> sink) {
+        this.sink = sink;
+
+        AtomList rest = parse();
+
+        if (!rest.isEmpty()) {
+            sink.accept(takeAtoms());
+        }
+    }
+
+    public boolean parseStatement() {  // Parses One Top Level Statement -> Returns False Once the Input is Exhausted
+        if (currentToken == null) {
+            return false;
+        }
+
+        if (!statement()) {
+            reject();
+        }
+
+        return true;
+    }
+
+    public AtomList takeAtoms() {  // Returns the Atoms Generated Since the Last Call
+        AtomList atoms = atomQueue;
+
+        labelBase += atoms.size();
+        atomQueue = new AtomList(operands);
+
+        return atoms;
+    }
+
+    public int getPosition() {  // Index of the Next Token to be Parsed
+        return position;
+    }
+
+    public int getLabelLimit() {
+        return labelLimit;
     }
 
+    private enum BlockKind { IF, ELSE, ELSE_IF, WHILE, FOR }
+
+    // A Block Whose Closing Atoms are Still Pending, Kept on an Explicit Stack Instead of the Java Stack
+    // An If Holds its Own TST so the Jump Target can be Patched Directly Once the Else is Seen
+    // The TST is Held by Absolute Index, labelBase Plus its Index in atomQueue, so it Survives Atoms Being Taken
+    private record OpenBlock(BlockKind kind, int beforeLabel, int afterLabel, AtomList increment, int test) {}
+
     private boolean statements() {
-        boolean statementIsValid =  statement();
+        boolean statementIsValid = statement();
+
+        while (statementIsValid && currentToken != null) {
+            publish();
+            statementIsValid = statement();
+        }
+
+        return true;
+    }
+
+    private boolean statement() {  // Parses a Single Statement, Including Every Block Nested Inside It
+        ArrayDeque<OpenBlock> openBlocks = new ArrayDeque<>();
+
+        if (!statementHead(openBlocks)) {
+            return false;
+        }
 
-        if (statementIsValid && currentToken != null) {
-            statements();
+        while (!openBlocks.isEmpty()) {
+            publish();
+
+            if (currentToken != null && statementHead(openBlocks)) {
+                continue;
+            }
+
+            expect(TokenType.CLOSING_CURLY_BRACKET);
+            closeBlock(openBlocks);
         }
 
         return true;
     }
 
-    private boolean statement() {  // Parses a Single Statement Based on Current Token Type
-        return ifStatement() ||
-                whileLoop() ||
-                forLoop() ||
+    private boolean statementHead(ArrayDeque<OpenBlock> openBlocks) {  // Parses a Simple Statement or Opens a Block
+        return ifStatement(openBlocks) ||
+                whileLoop(openBlocks) ||
+                forLoop(openBlocks) ||
                 assignment() && expect(TokenType.SEMICOLON);
     }
 
-    private boolean forLoop() {
+    private void closeBlock(ArrayDeque<OpenBlock> openBlocks) {  // Emits the Atoms that Follow a Closed Block
+        OpenBlock block = openBlocks.pop();
+
+        switch (block.kind()) {
+            case WHILE -> {
+                atomQueue.add(Operation.JMP, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, block.beforeLabel());
+                offerLabel(block.afterLabel());
+            }
+            case FOR -> {
+                atomQueue.append(block.increment());
+                atomQueue.add(Operation.JMP, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, block.beforeLabel());
+                offerLabel(block.afterLabel());
+            }
+            case IF -> {
+                pendingTests.pop();
+                atomQueue.add(Operation.JMP, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, block.afterLabel());
+
+                if (elseStatement(openBlocks, block)) {
+                    return;  // The After Label is Emitted Once the Else Branch Closes
+                }
+
+                offerLabel(block.afterLabel());
+            }
+            case ELSE, ELSE_IF -> offerLabel(block.afterLabel());
+        }
+
+        // An Else If Has No Braces of its Own, it Closes Together with the Last If of its Chain
+        while (!openBlocks.isEmpty() && openBlocks.peek().kind() == BlockKind.ELSE_IF) {
+            offerLabel(openBlocks.pop().afterLabel());
+        }
+    }
+
+    private boolean forLoop(ArrayDeque<OpenBlock> openBlocks) {
         if (accept(TokenType.KEYWORD_FOR) && expect(TokenType.OPENING_PARENTHESIS)) {
             assignment();
             expect(TokenType.SEMICOLON);
-            AtomOperation beforeLabel = generateLabel("before_for");
-            AtomOperation afterLabel = generateLabel("after_for");
+            int beforeLabel = generateLabel(LabelKind.BEFORE_FOR);
+            int afterLabel = generateLabel(LabelKind.AFTER_FOR);
+            operands.pair(beforeLabel, afterLabel);
 
-            atomQueue.offer(beforeLabel);
-            atomQueue.offer(new AtomOperation(Operation.TST));
-            atomQueue.peekLast().setResult("");
-            atomQueue.peekLast().setDest(afterLabel.getDest());
+            offerLabel(beforeLabel);
+            atomQueue.add(Operation.TST, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, afterLabel);
 
             if (condition()) {
                 expect(TokenType.SEMICOLON);
                 assignment();
-                AtomOperation assignment = atomQueue.pollLast();
+                AtomList assignment = atomQueue.cut(atomQueue.size() - 1);
                 expect(TokenType.CLOSING_PARENTHESIS);
+                expect(TokenType.OPENING_CURLY_BRACKET);
 
-                boolean blockIsValid = block();
+                openBlocks.push(new OpenBlock(BlockKind.FOR, beforeLabel, afterLabel, assignment, AtomList.NONE));
 
-                atomQueue.offer(assignment);
-                atomQueue.offer(new AtomOperation(Operation.JMP, null, null, null, null, beforeLabel.getDest()));
-                atomQueue.offer(afterLabel);
-
-                return blockIsValid;
+                return true;
             }
         }
 
@@ -128,77 +253,65 @@ public class ParserProject {
     }
 
 
-    private boolean whileLoop() {
+    private boolean whileLoop(ArrayDeque<OpenBlock> openBlocks) {
         if(accept(TokenType.KEYWORD_WHILE) && expect(TokenType.OPENING_PARENTHESIS)) {
-            AtomOperation beforeLabel = generateLabel("before_while");
-            AtomOperation afterLabel = generateLabel("after_while");
+            int beforeLabel = generateLabel(LabelKind.BEFORE_WHILE);
+            int afterLabel = generateLabel(LabelKind.AFTER_WHILE);
+            operands.pair(beforeLabel, afterLabel);
 
-            atomQueue.offer(beforeLabel);
-            atomQueue.offer(new AtomOperation(Operation.TST));
-            atomQueue.peekLast().setResult("");
-            atomQueue.peekLast().setDest(afterLabel.getDest());
+            offerLabel(beforeLabel);
+            atomQueue.add(Operation.TST, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, afterLabel);
 
             if(condition()) {
                 expect(TokenType.CLOSING_PARENTHESIS);
-                boolean blockIsValid = block();
+                expect(TokenType.OPENING_CURLY_BRACKET);
 
-                atomQueue.offer(new AtomOperation(Operation.JMP, "", "", "", "", beforeLabel.getDest()));
-                atomQueue.offer(afterLabel);
+                openBlocks.push(new OpenBlock(BlockKind.WHILE, beforeLabel, afterLabel, null, AtomList.NONE));
 
-                return blockIsValid;
+                return true;
             }
         }
 
         return false;
     }
 
-    private boolean ifStatement() {
+    private boolean ifStatement(ArrayDeque<OpenBlock> openBlocks) {
         if(accept(TokenType.KEYWORD_IF) && expect(TokenType.OPENING_PARENTHESIS)) {
-            AtomOperation afterLabel = generateLabel("after_if");
-
-            atomQueue.offer(new AtomOperation(Operation.TST));
-            atomQueue.peekLast().setResult("");
-            atomQueue.peekLast().setDest(afterLabel.getDest());
+            int afterLabel = generateLabel(LabelKind.AFTER_IF);
+            int test = labelBase + atomQueue.add(Operation.TST, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, afterLabel);
 
             if(condition()) {
                 expect(TokenType.CLOSING_PARENTHESIS);
+                expect(TokenType.OPENING_CURLY_BRACKET);
 
-                boolean blockIsValid = block();
-
-                atomQueue.offer(new AtomOperation(Operation.JMP, "", "", "", "", afterLabel.getDest()));
-
-                if(!elseStatement()) {
-                    for(int i = atomQueue.size() - 1; i >= 0; i--) {
-                        if(atomQueue.get(i).getOp() == Operation.TST) {
-                            atomQueue.get(i).setDest(afterLabel.getDest());
-                            break;
-                        }
-                    }
-                }
-
-                atomQueue.offer(afterLabel);
+                openBlocks.push(new OpenBlock(BlockKind.IF, AtomList.NONE, afterLabel, null, test));
+                pendingTests.push(test);
 
-                return blockIsValid;
+                return true;
             }
         }
 
         return false;
     }
 
-    private boolean elseStatement() {
+    private boolean elseStatement(ArrayDeque<OpenBlock> openBlocks, OpenBlock ifBlock) {
         if(accept(TokenType.KEYWORD_ELSE)) {
-            AtomOperation beforeLabel = generateLabel("before_else");
+            int beforeLabel = generateLabel(LabelKind.BEFORE_ELSE);
+            int afterLabel = ifBlock.afterLabel();
+            operands.pair(beforeLabel, afterLabel);
 
-            atomQueue.offer(beforeLabel);
+            offerLabel(beforeLabel);
+            atomQueue.setDest(ifBlock.test() - labelBase, beforeLabel);
 
-            for(int i = atomQueue.size() - 1; i >= 0; i--) {
-                if(atomQueue.get(i).getOp() == Operation.TST) {
-                    atomQueue.get(i).setDest(beforeLabel.getDest());
-                    break;
-                }
+            openBlocks.push(new OpenBlock(BlockKind.ELSE_IF, AtomList.NONE, afterLabel, null, AtomList.NONE));
+
+            if (!ifStatement(openBlocks)) {
+                openBlocks.pop();
+                expect(TokenType.OPENING_CURLY_BRACKET);
+                openBlocks.push(new OpenBlock(BlockKind.ELSE, AtomList.NONE, afterLabel, null, AtomList.NONE));
             }
 
-            return ifStatement() || block();
+            return true;
         }
 
         return false;
@@ -208,7 +321,7 @@ public class ParserProject {
         type();
 
         if (peek(TokenType.IDENTIFIER)) {
-            atomQueue.offer(new AtomOperation(null, null, null, currentToken.value(), null, null));
+            atomQueue.add(null, AtomList.NONE, AtomList.NONE, operands.intern(currentToken.value()), null, AtomList.NONE);
             accept(TokenType.IDENTIFIER);
 
             if (opUnaryMath()) {
@@ -221,14 +334,26 @@ public class ParserProject {
         return false;
     }
 
-    private boolean expression() {
-        if (factor()) {
-            return peek(TokenType.SEMICOLON) || opMath() && factor();
-        } else if (accept(TokenType.OPENING_PARENTHESIS)) {
-            return expression() && expect(TokenType.CLOSING_PARENTHESIS);
+    private boolean expression() {  // Nested Parentheses are Counted Rather than Recursed Into
+        int openParentheses = 0;
+
+        while (!factor()) {
+            if (!accept(TokenType.OPENING_PARENTHESIS)) {
+                return false;
+            }
+
+            openParentheses++;
         }
 
-        return false;
+        if (!peek(TokenType.SEMICOLON) && !(opMath() && factor())) {
+            return false;
+        }
+
+        for (int i = 0; i < openParentheses; i++) {
+            expect(TokenType.CLOSING_PARENTHESIS);
+        }
+
+        return true;
     }
 
     private boolean condition() {
@@ -245,21 +370,10 @@ public class ParserProject {
 
     private boolean factor() {
         Token factorToken = currentToken;
-        AtomOperation atom = atomQueue.peekLast();
+        int atom = atomQueue.size() - 1;
 
         if(accept(TokenType.IDENTIFIER)) {
-            if(atom.getLeft() == null) {
-                atom.setLeft(factorToken.value());
-            } else {
-                atom.setRight(factorToken.value());
-            }
-
-            if(peek(TokenType.SEMICOLON)) {
-                if(atom.getRight() == null) {
-                    atom.setOp(Operation.MOV);
-                    atom.setRight("");
-                }
-            }
+            setOperand(atom, operands.intern(factorToken.value()));
 
             return true;
         }
@@ -270,18 +384,7 @@ public class ParserProject {
         if(accept(TokenType.INTEGER) || accept(TokenType.DOUBLE)) {
             String value = isNegative ? "-%s".formatted(factorToken.value()) : factorToken.value();
 
-            if(atom.getLeft() == null) {
-                atom.setLeft(value);
-            } else {
-                atom.setRight(value);
-            }
-
-            if(peek(TokenType.SEMICOLON)) {
-                if(atom.getRight() == null) {
-                    atom.setOp(Operation.MOV);
-                    atom.setRight("");
-                }
-            }
+            setOperand(atom, operands.intern(value));
 
             return true;
         }
@@ -289,21 +392,36 @@ public class ParserProject {
         return opNegate();
     }
 
+    private void setOperand(int atom, int operand) {  // Fills the Left Operand First, a Lone Operand Before a Semicolon is a Move
+        if(atomQueue.getLeft(atom) == AtomList.NONE) {
+            atomQueue.setLeft(atom, operand);
+        } else {
+            atomQueue.setRight(atom, operand);
+        }
+
+        if(peek(TokenType.SEMICOLON)) {
+            if(atomQueue.getRight(atom) == AtomList.NONE) {
+                atomQueue.setOp(atom, Operation.MOV);
+                atomQueue.setRight(atom, AtomList.NONE);
+            }
+        }
+    }
+
     private boolean opMath() {  // Outputs Correctly
         if (accept(TokenType.ADD)) {
-            atomQueue.peekLast().setOp(Operation.ADD);
+            atomQueue.setOp(atomQueue.size() - 1, Operation.ADD);
 
             return true;
         } else if (accept(TokenType.SUBTRACT)) {
-            atomQueue.peekLast().setOp(Operation.SUB);
+            atomQueue.setOp(atomQueue.size() - 1, Operation.SUB);
 
             return true;
         } else if (accept(TokenType.MULTIPLY)) {
-            atomQueue.peekLast().setOp(Operation.MUL);
+            atomQueue.setOp(atomQueue.size() - 1, Operation.MUL);
 
             return true;
         } else if (accept(TokenType.DIVIDE)) {
-            atomQueue.peekLast().setOp(Operation.DIV);
+            atomQueue.setOp(atomQueue.size() - 1, Operation.DIV);
 
             return true;
         }
@@ -312,18 +430,18 @@ public class ParserProject {
     }
 
     private boolean opUnaryMath() {
-        AtomOperation atom = atomQueue.peekLast();
+        int atom = atomQueue.size() - 1;
 
         if (accept(TokenType.INCREMENT)) {
-            atom.setOp(Operation.ADD);
-            atom.setRight("1");
-            atom.setLeft(atom.getResult());
+            atomQueue.setOp(atom, Operation.ADD);
+            atomQueue.setRight(atom, operands.intern("1"));
+            atomQueue.setLeft(atom, atomQueue.getResult(atom));
 
             return true;
         } else if (accept(TokenType.DECREMENT)) {
-            atom.setOp(Operation.SUB);
-            atom.setRight("1");
-            atom.setLeft(atom.getResult());
+            atomQueue.setOp(atom, Operation.SUB);
+            atomQueue.setRight(atom, operands.intern("1"));
+            atomQueue.setLeft(atom, atomQueue.getResult(atom));
 
             return true;
         }
@@ -333,11 +451,11 @@ public class ParserProject {
 
     private boolean opNegate() {
         if(peek(TokenType.IDENTIFIER)) {
-            AtomOperation atom = atomQueue.peekLast();
+            int atom = atomQueue.size() - 1;
 
-            atom.setOp(Operation.NEG);
-            atom.setLeft(currentToken.value());
-            atom.setRight("");
+            atomQueue.setOp(atom, Operation.NEG);
+            atomQueue.setLeft(atom, operands.intern(currentToken.value()));
+            atomQueue.setRight(atom, AtomList.NONE);
             accept(TokenType.IDENTIFIER);
 
             return true;
@@ -347,27 +465,52 @@ public class ParserProject {
     }
 
     private boolean opComparison() {
-        AtomOperation atom = atomQueue.peekLast();
+        int atom = atomQueue.size() - 1;
 
         if(accept(TokenType.EQUAL)) {
-            atom.setCmp("6");
+            atomQueue.setCmp(atom, Comparison.EQUAL);
         } else if(accept(TokenType.LESS_THAN)) {
-            atom.setCmp("5");
+            atomQueue.setCmp(atom, Comparison.LESS_THAN);
         } else if(accept(TokenType.GREATER_THAN)) {
-            atom.setCmp("4");
+            atomQueue.setCmp(atom, Comparison.GREATER_THAN);
         } else if(accept(TokenType.LESS_THAN_OR_EQUAL)) {
-            atom.setCmp("3");
+            atomQueue.setCmp(atom, Comparison.LESS_THAN_OR_EQUAL);
         } else if(accept(TokenType.GREATER_THAN_OR_EQUAL)) {
-            atom.setCmp("2");
+            atomQueue.setCmp(atom, Comparison.GREATER_THAN_OR_EQUAL);
         } else if(accept(TokenType.NOT_EQUAL)) {
-            atom.setCmp("1");
+            atomQueue.setCmp(atom, Comparison.NOT_EQUAL);
         }
 
-        return atom.getCmp() != null;
+        return atomQueue.getCmp(atom) != null;
+    }
+
+    private void publish() {  // Hands Atoms Before the First Open If's TST to the Sink, the Rest Can Still Change
+        if (sink == null) {
+            return;
+        }
+
+        int finished = pendingTests.isEmpty() ? atomQueue.size() : pendingTests.peekLast() - labelBase;
+
+        if (finished < PUBLISH_THRESHOLD) {
+            return;
+        }
+
+        AtomList atoms = atomQueue;
+
+        atomQueue = atoms.cut(finished);
+        labelBase += finished;
+        sink.accept(atoms);
+    }
+
+    private int generateLabel(LabelKind kind) {  // Returns the Operand Id of a New Label
+        int number = labelBase + atomQueue.size();
+        labelLimit = Math.max(labelLimit, number + 1);
+
+        return operands.internLabel(kind, number);
     }
 
-    private AtomOperation generateLabel(String baseName) {
-        return new AtomOperation(Operation.LBL, "", "" , "", "", "%s_%d".formatted(baseName, atomQueue.size()));
+    private void offerLabel(int label) {
+        atomQueue.add(Operation.LBL, AtomList.NONE, AtomList.NONE, AtomList.NONE, null, label);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package compiler.frontend;
+
+import compiler.common.AtomList;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a pipeline of optimization passes over the atoms again and again until a whole round changes nothing,
+ * or until the iteration cap is reached, and measures what every pass and analysis costs and achieves.
+ */
+public class PassManager {
+    public static final int DEFAULT_MAX_ITERATIONS = 8;
+
+    private final List<OptimizationPass> passes;
+    private final int maxIterations;
+
+    /**
+     * @param passes the passes in the order they run in every round
+     * @param maxIterations the most rounds that run, even if the last one still changed the atoms
+     */
+    public PassManager(List<OptimizationPass> passes, int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("A pipeline needs at least one iteration");
+        }
+
+        this.passes = List.copyOf(passes);
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * What one pass or analysis did over all rounds
+     */
+    public static class Statistics {
+        private final String name;
+        private int runs;
+        private long nanos;
+        private int removed;
+        private int rewritten;
+
+        Statistics(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getRemoved() {  // Negative When the Pass Added Atoms
+            return removed;
+        }
+
+        public int getRewritten() {
+            return rewritten;
+        }
+    }
+
+    /**
+     * The outcome of running a pipeline
+     */
+    public record Report(List<Statistics> statistics, int iterations, boolean converged, int atomsBefore, int atomsAfter) {
+        public void print(PrintStream out) {
+            // The name column is as wide as the longest name, so the numbers line up whatever passes ran
+            int width = statistics.stream().mapToInt(pass -> pass.getName().length()).reduce("Pass".length(), Math::max);
+
+            out.printf("%-" + width + "s %6s %10s %9s %10s%n", "Pass", "Runs", "Time ms", "Removed", "Rewritten");
+
+            for (Statistics pass : statistics) {
+                out.printf("%-" + width + "s %6d %10.3f %9d %10d%n", pass.getName(), pass.getRuns(), pass.getNanos() / 1e6, pass.getRemoved(), pass.getRewritten());
+            }
+
+            out.printf("%d iterations%s, %d atoms before, %d after%n", iterations, converged ? "" : " (cap reached)", atomsBefore, atomsAfter);
+        }
+    }
+
+    /**
+     * Optimizes atoms in place
+     * @param atoms the atoms to optimize
+     * @return what every pass did
+     */
+    public Report run(AtomList atoms) {
+        OptimizationContext context = new OptimizationContext(atoms);
+        Map<OptimizationPass, Statistics> passStatistics = new LinkedHashMap<>();
+        EnumMap<Analysis, Statistics> analysisStatistics = new EnumMap<>(Analysis.class);
+        int atomsBefore = atoms.size();
+        int iterations = 0;
+        boolean changed = true;
+
+        for (OptimizationPass pass : passes) {
+            passStatistics.put(pass, new Statistics(pass.getName()));
+        }
+
+        while (changed && iterations < maxIterations) {
+            changed = false;
+            iterations++;
+
+            for (OptimizationPass pass : passes) {
+                for (Analysis analysis : pass.getRequiredAnalyses()) {
+                    if (!context.isComputed(analysis)) {
+                        Statistics statistics = analysisStatistics.computeIfAbsent(analysis, key -> new Statistics("[" + key.name().toLowerCase().replace('_', '-') + "]"));
+                        long start = System.nanoTime();
+
+                        context.compute(analysis);
+                        statistics.nanos += System.nanoTime() - start;
+                        statistics.runs++;
+                    }
+                }
+
+                Statistics statistics = passStatistics.get(pass);
+                int size = atoms.size();
+                long start = System.nanoTime();
+
+                pass.run(context);
+                context.compact();
+
+                statistics.nanos += System.nanoTime() - start;
+                statistics.runs++;
+
+                int removed = size - atoms.size();
+                int rewritten = context.takeRewritten();
+
+                statistics.removed += removed;
+                statistics.rewritten += rewritten;
+
+                if (removed != 0 || rewritten != 0) {
+                    context.invalidate(pass.getInvalidatedAnalyses());
+                    changed = true;
+                }
+            }
+        }
+
+        List<Statistics> statistics = new ArrayList<>(passStatistics.values());
+        statistics.addAll(analysisStatistics.values());
+
+        return new Report(statistics, iterations, !changed, atomsBefore, atoms.size());
+    }
+}
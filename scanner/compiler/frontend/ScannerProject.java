@@ -5,186 +5,154 @@
 
 package compiler.frontend;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 public class ScannerProject {
-    // The inputs are all ascii values (0-127) -> 128 inputs
-    private static final int INPUTS = 128;
-    private static final int STATES = 46;
-    private static final TokenType[] ACCEPT = new TokenType[STATES];
-    private static final int[][] FSM = new int[STATES][INPUTS];
-
-	public static void initializeStates() {
-        ACCEPT[1] = TokenType.IDENTIFIER;
-        ACCEPT[2] = TokenType.SEMICOLON;
-        ACCEPT[4] = TokenType.NOT_EQUAL;
-        ACCEPT[5] = TokenType.ASSIGN;
-        ACCEPT[6] = TokenType.EQUAL;
-        ACCEPT[7] = TokenType.LESS_THAN;
-        ACCEPT[8] = TokenType.LESS_THAN_OR_EQUAL;
-        ACCEPT[9] = TokenType.GREATER_THAN;
-        ACCEPT[10] = TokenType.GREATER_THAN_OR_EQUAL;
-        ACCEPT[11] = TokenType.ADD;
-        ACCEPT[12] = TokenType.INCREMENT;
-        ACCEPT[13] = TokenType.SUBTRACT;
-        ACCEPT[14] = TokenType.DECREMENT;
-        ACCEPT[15] = TokenType.MULTIPLY;
-        ACCEPT[16] = TokenType.DIVIDE;
-        ACCEPT[17] = TokenType.INTEGER;
-        ACCEPT[18] = TokenType.CLOSING_PARENTHESIS;
-        ACCEPT[19] = TokenType.OPENING_PARENTHESIS;
-        ACCEPT[20] = TokenType.CLOSING_CURLY_BRACKET;
-        ACCEPT[21] = TokenType.OPENING_CURLY_BRACKET;
-        ACCEPT[44] = TokenType.DOUBLE;
-        ACCEPT[45] = TokenType.DOUBLE;
+    // Built once when the class is loaded, the lexer is immutable and shared by every scan
+    private static final Lexer LEXER = new Lexer(generateTables());
+
+    /**
+     * Gets the lexer for the language, it is safe to use from any number of threads at once
+     * @return the shared lexer
+     */
+    public static Lexer getLexer() {
+        return LEXER;
+    }
+
+    /**
+     * Generates the state machine for the language's tokens
+     * @return the minimized and compressed tables
+     */
+    public static LexerTables generateTables() {
+        LexerGenerator generator = new LexerGenerator();
+
+        // Keywords are added first so they win over identifiers with the same spelling
+        generator.addLiterals(
+                TokenType.KEYWORD_FOR,
+                TokenType.KEYWORD_IF,
+                TokenType.KEYWORD_INT,
+                TokenType.KEYWORD_WHILE,
+                TokenType.KEYWORD_ELSE,
+                TokenType.KEYWORD_DOUBLE
+        );
 
         // handle variables
-        setStateValues(0, 'a', 'z', 1);
-        setStateValues(0, 'A', 'Z', 1);
-        setStateValues(1, 'a', 'z', 1);
-        setStateValues(1, 'A', 'Z', 1);
+        generator.addPattern(TokenType.IDENTIFIER, "[a-zA-Z]+");
 
         // handle numbers
-        setStateValues(0, '0', '9', 17);
-        setStateValues(17, '0', '9', 17);
-
-        setStateValues(44, '0', '9', 44);
-
-        // handle keywords
-        addKeyword("for", TokenType.KEYWORD_FOR, new int[]{22, 23, 24});
-        addKeyword("if", TokenType.KEYWORD_IF, new int[]{25, 26});
-        addKeyword("int", TokenType.KEYWORD_INT, new int[]{25, 27, 28});
-        addKeyword("while", TokenType.KEYWORD_WHILE, new int[]{29, 30, 31, 32, 33});
-        addKeyword("else", TokenType.KEYWORD_ELSE, new int[]{34, 35, 36, 37});
-        addKeyword("double", TokenType.KEYWORD_DOUBLE, new int[]{38, 39, 40, 41, 42, 43});
-
-        FSM[0][';'] = 2;
-
-        FSM[0]['!'] = 3;
-        FSM[3]['='] = 4;
-
-        FSM[0]['='] = 5;
-        FSM[5]['='] = 6;
-
-        FSM[0]['<'] = 7;
-        FSM[7]['='] = 8;
-
-        FSM[0]['>'] = 9;
-        FSM[9]['='] = 10;
-
-        FSM[0]['+'] = 11;
-        FSM[11]['+'] = 12;
-
-        FSM[0]['-'] = 13;
-        FSM[13]['-'] = 14;
-
-        FSM[0]['*'] = 15;
-
-        FSM[0]['/'] = 16;
-
-        FSM[17]['.'] = 44;
-
-        FSM[0][')'] = 18;
-
-        FSM[0]['('] = 19;
-
-        FSM[0]['}'] = 20;
-
-        FSM[0]['{'] = 21;
+        generator.addPattern(TokenType.INTEGER, "[0-9]+");
+        generator.addPattern(TokenType.DOUBLE, "[0-9]+\\.[0-9]*");
+
+        generator.addLiterals(
+                TokenType.SEMICOLON,
+                TokenType.NOT_EQUAL,
+                TokenType.ASSIGN,
+                TokenType.EQUAL,
+                TokenType.LESS_THAN,
+                TokenType.LESS_THAN_OR_EQUAL,
+                TokenType.GREATER_THAN,
+                TokenType.GREATER_THAN_OR_EQUAL,
+                TokenType.ADD,
+                TokenType.INCREMENT,
+                TokenType.SUBTRACT,
+                TokenType.DECREMENT,
+                TokenType.MULTIPLY,
+                TokenType.DIVIDE,
+                TokenType.CLOSING_PARENTHESIS,
+                TokenType.OPENING_PARENTHESIS,
+                TokenType.CLOSING_CURLY_BRACKET,
+                TokenType.OPENING_CURLY_BRACKET
+        );
+
+        return generator.generate();
     }
 
-    private static void addKeyword(String keyword, TokenType type, int[] states) {
-        if (keyword.length() != states.length) {
-            throw new IllegalArgumentException("Keyword and states must have the same length");
+    public static List<Token> tokenizeInput(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            return tokenize(channel);
         }
+    }
 
-        FSM[0][keyword.charAt(0)] = states[0];
-
-        for (int i = 0; i < states.length - 1; i++) {
-            setStateValues(states[i], 'a', 'z', 1);
-            setStateValues(states[i], 'A', 'Z', 1);
+    /**
+     * Tokenizes the input of a channel, feeding each byte into the state machine as it is read
+     * @param channel the channel to read the source from
+     * @return the tokens in the order they appear in the source
+     */
+    public static List<Token> tokenize(ReadableByteChannel channel) throws IOException {
+        TokenSource source = open(channel);
+        List<Token> tokens = new ArrayList<>();
 
-            FSM[states[i]][keyword.charAt(i + 1)] = states[i + 1];
-            ACCEPT[states[i]] = TokenType.IDENTIFIER;
+        for (Token token = source.next(); token != null; token = source.next()) {
+            tokens.add(token);
         }
 
-        setStateValues(states[states.length - 1], 'a', 'z', 1);
-        setStateValues(states[states.length - 1], 'A', 'Z', 1);
-        ACCEPT[states[states.length - 1]] = type;
+        return tokens;
     }
 
-    public static List<Token> tokenizeInput(String filename) throws FileNotFoundException {
-        StringBuilder input = new StringBuilder();
-        File inputFile = new File(filename);
-        Scanner sc = new Scanner(inputFile);
-
-        while (sc.hasNextLine()) {
-            input.append(sc.nextLine());
-        }
-        sc.close();
+    /**
+     * Opens a token source that only reads from the channel when the next token is requested
+     * @param channel the channel to read the source from
+     * @return a token source over the channel
+     */
+    public static TokenSource open(ReadableByteChannel channel) {
+        return open(channel, new SymbolTable());
+    }
 
-        List<Token> tokens = new ArrayList<>();
-        int state = 0;
-        StringBuilder currentToken = new StringBuilder();
-
-        for (char ch : input.toString().toCharArray()){
-            if (ch < INPUTS) {
-                int oldState = state;
-                state = FSM[oldState][ch];
-
-                if (state != 0) {
-                    currentToken.append(ch);
-                } else {
-                    if(!currentToken.isEmpty()){
-                        String tokenText = currentToken.toString();
-
-                        if (ACCEPT[oldState] != null) {
-                            tokens.add(new Token(ACCEPT[oldState], tokenText));
-                        } else {
-                            System.out.println("Unaccepted token '" + tokenText + "'");
-                        }
-                    }
-
-                    currentToken.setLength(0);
-                    state = FSM[0][ch];
-
-                    if (state != 0) {
-                        currentToken.append(ch);
-                    } else if (ch != ' ') {
-                        System.out.println("Unaccepted character '" + ch + "'");
-                    }
-                }
-            }
-        }
+    /**
+     * Opens a token source that only reads from the channel when the next token is requested
+     * @param channel the channel to read the source from
+     * @param symbols the table identifiers and numbers are interned into
+     * @return a token source over the channel
+     */
+    public static TokenSource open(ReadableByteChannel channel, SymbolTable symbols) {
+        return LEXER.open(channel, symbols);
+    }
 
-        if (!currentToken.isEmpty()) {
-            String tokenText = currentToken.toString();
+    /**
+     * Scans the whole input of a channel into a compact token buffer
+     * @param channel the channel to read the source from
+     * @param symbols the table identifiers and numbers are interned into
+     * @return the buffer holding every accepted token
+     */
+    public static TokenBuffer scan(ReadableByteChannel channel, SymbolTable symbols) throws IOException {
+        return LEXER.scan(channel, symbols);
+    }
 
-            if (ACCEPT[state] != null) {
-                tokens.add(new Token(ACCEPT[state], tokenText));
-            } else {
-                System.out.println("Unaccepted token '" + tokenText + "'");
-            }
+    /**
+     * Maps a file into memory and scans it in parallel chunks on the common fork-join pool
+     * @param filename the file to scan
+     * @param symbols the table identifiers and numbers are interned into
+     * @return the buffer holding every accepted token, the same tokens a sequential scan produces
+     */
+    public static TokenBuffer scanParallel(String filename, SymbolTable symbols) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            return LEXER.scanParallel(input, symbols, ForkJoinPool.commonPool());
         }
-
-        return tokens;
     }
 
-    private static void setStateValues(int state, int lower, int upper, int value) {
-        for (int i = lower; i <= upper; i++) {
-            if(FSM[state][i] == 0) {
-                FSM[state][i] = value;
-            }
-        }
+    /**
+     * Scans a source already in memory in parallel chunks on the common fork-join pool
+     * @param input the source, read from its position to its limit
+     * @param symbols the table identifiers and numbers are interned into
+     * @return the buffer holding every accepted token, the same tokens a sequential scan produces
+     */
+    public static TokenBuffer scanParallel(ByteBuffer input, SymbolTable symbols) throws IOException {
+        return LEXER.scanParallel(input, symbols, ForkJoinPool.commonPool());
     }
 
     // call the input method + print the results
-    public static void main(String[] args) throws FileNotFoundException {
-        initializeStates();
+    public static void main(String[] args) throws IOException {
         List<Token> tokens = tokenizeInput("input.txt");
         System.out.println("Tokens: " + tokens);
     }
@@ -0,0 +1,63 @@
+package compiler.frontend;
+
+/**
+ * SIMD within a register helpers that test 8 ascii bytes at once.
+ * Words are read little endian, so the first byte of the input is the lowest byte of the word.
+ */
+final class Swar {
+    static final int WORD_BYTES = Long.BYTES;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long CASE_BIT = 0x20 * ONES;
+
+    private Swar() {}
+
+    /**
+     * Counts the leading bytes of a word that are ascii letters
+     * @param word 8 bytes of input
+     * @return the number of letters before the first other byte, 8 if every byte is a letter
+     */
+    static int letterRun(long word) {
+        // Setting the case bit maps 'A'-'Z' onto 'a'-'z' and nothing else onto that range
+        return leadingMatches(inRange(word | CASE_BIT, 'a', 'z'));
+    }
+
+    /**
+     * Counts the leading bytes of a word that are ascii digits
+     * @param word 8 bytes of input
+     * @return the number of digits before the first other byte, 8 if every byte is a digit
+     */
+    static int digitRun(long word) {
+        return leadingMatches(inRange(word, '0', '9'));
+    }
+
+    /**
+     * Counts the leading bytes of a word that are spaces
+     * @param word 8 bytes of input
+     * @return the number of spaces before the first other byte, 8 if every byte is a space
+     */
+    static int spaceRun(long word) {
+        long difference = word ^ (' ' * ONES);
+        // The high bit of a byte is set when the byte of the difference is not zero
+        long nonZero = (((difference & LOW_BITS) + LOW_BITS) | difference) & HIGH_BITS;
+
+        return leadingMatches(~nonZero & HIGH_BITS);
+    }
+
+    // Sets the high bit of every byte between lower and upper inclusive, bytes of 128 and above never match
+    private static long inRange(long word, int lower, int upper) {
+        long low = word & LOW_BITS;
+        long atLeastLower = (low + (0x80 - lower) * ONES) & HIGH_BITS;
+        long aboveUpper = (low + (0x7F - upper) * ONES) & HIGH_BITS;
+
+        return atLeastLower & ~aboveUpper & ~word & HIGH_BITS;
+    }
+
+    private static int leadingMatches(long matches) {
+        long misses = ~matches & HIGH_BITS;
+
+        return misses == 0 ? WORD_BYTES : Long.numberOfTrailingZeros(misses) >>> 3;
+    }
+}
@@ -0,0 +1,139 @@
+package compiler.frontend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns the text of identifiers and numbers so each distinct spelling is only turned into a String
+ * and a Token once, no matter how often it appears in the source.
+ * A table is not thread safe, each compilation uses its own.
+ */
+public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private Token[] tokens = new Token[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Open addressing table of symbol ids + 1, 0 marks an empty slot
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Interns the text of a token
+     * @param text the buffer holding the ascii text of the token
+     * @param length the number of bytes of the buffer that belong to the token
+     * @param type the type of the token
+     * @return the id of the symbol, ids are dense and start at 0
+     */
+    public int intern(byte[] text, int length, TokenType type) {
+        int hash = hash(text, length);
+        int mask = slots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+
+            if (id < 0) {
+                id = add(new String(text, 0, length, StandardCharsets.US_ASCII), type, hash);
+                slots[slot] = id + 1;
+
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+
+                return id;
+            }
+
+            if (hashes[id] == hash && matches(names[id], text, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Interns the symbol of a token from another table
+     * @param token the token of the symbol
+     * @return the id of the symbol in this table
+     */
+    public int intern(Token token) {
+        byte[] text = token.value().getBytes(StandardCharsets.US_ASCII);
+
+        return intern(text, text.length, token.type());
+    }
+
+    /**
+     * Gets the text of a symbol
+     * @param id the id of the symbol
+     * @return the interned text
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Gets the shared token of a symbol
+     * @param id the id of the symbol
+     * @return the token every occurrence of the symbol is represented by
+     */
+    public Token token(int id) {
+        return tokens[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, TokenType type, int hash) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            tokens = Arrays.copyOf(tokens, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        names[size] = name;
+        tokens[size] = new Token(type, name);
+        hashes[size] = hash;
+
+        return size++;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(byte[] text, int length) {
+        int hash = 0;
+
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + text[i];
+        }
+
+        // Spread the high bits so short identifiers don't cluster in the low slots
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, byte[] text, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != text[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
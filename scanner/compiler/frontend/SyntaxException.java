@@ -0,0 +1,13 @@
+package compiler.frontend;
+
+/**
+ * Thrown when the parser finds a token the grammar doesn't allow. The message is the one the parser used
+ * to print before exiting, so a caller compiling many files can report it and carry on.
+ */
+public class SyntaxException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public SyntaxException(String message) {
+        super(message);
+    }
+}
@@ -2,8 +2,28 @@ package compiler.frontend;
 
 public record Token(TokenType type, String value) {
 
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final Token[] FIXED = new Token[TYPES.length];
+
+    static {
+        for (TokenType type : TYPES) {
+            if (type.getSpelling() != null) {
+                FIXED[type.ordinal()] = new Token(type, type.getSpelling());
+            }
+        }
+    }
+
+    /**
+     * Gets the shared token of a keyword or punctuation type
+     * @param type a type with a fixed spelling
+     * @return the one token instance for that type
+     */
+    public static Token of(TokenType type) {
+        return FIXED[type.ordinal()];
+    }
+
     public String toString() {
         return value + " (" + type + ")";
     }
 
-}
\ No newline at end of file
+}
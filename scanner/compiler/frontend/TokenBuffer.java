@@ -0,0 +1,192 @@
+package compiler.frontend;
+
+import java.util.Arrays;
+
+/**
+ * Stores scanned tokens as parallel primitive arrays instead of one object per token.
+ * Each token is its type, its start and end offset in the source, and the id of its symbol
+ * if it is an identifier or a number.
+ */
+public class TokenBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final SymbolTable symbols;
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int[] symbolIds = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public TokenBuffer(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Appends a token to the buffer
+     * @param type the type of the token
+     * @param start the offset of the first byte of the token in the source
+     * @param end the offset just past the last byte of the token in the source
+     * @param symbol the id of the token's symbol, or -1 for keywords and punctuation
+     */
+    public void add(TokenType type, int start, int end, int symbol) {
+        if (size == types.length) {
+            int capacity = size * 2;
+
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+        }
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        symbolIds[size] = symbol;
+        size++;
+    }
+
+    /**
+     * Appends every token of another buffer, re-interning its symbols into this buffer's table
+     * @param other the buffer to append, offsets are kept as they are
+     */
+    public void append(TokenBuffer other) {
+        int[] symbolMap = new int[other.symbols.size()];
+
+        for (int id = 0; id < symbolMap.length; id++) {
+            symbolMap[id] = symbols.intern(other.symbols.token(id));
+        }
+
+        for (int i = 0; i < other.size; i++) {
+            int symbol = other.symbolIds[i];
+
+            add(TYPES[other.types[i]], other.starts[i], other.ends[i], symbol < 0 ? -1 : symbolMap[symbol]);
+        }
+    }
+
+    /**
+     * Appends a range of tokens from another buffer that shares this buffer's symbol table
+     * @param other the buffer to copy from
+     * @param from the index of the first token to copy
+     * @param to the index just past the last token to copy
+     * @param shift the amount added to the offsets of the copied tokens
+     */
+    public void append(TokenBuffer other, int from, int to, int shift) {
+        int count = to - from;
+        int capacity = types.length;
+
+        while (size + count > capacity) {
+            capacity *= 2;
+        }
+
+        if (capacity != types.length) {
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            symbolIds = Arrays.copyOf(symbolIds, capacity);
+        }
+
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.symbolIds, from, symbolIds, size, count);
+
+        for (int i = 0; i < count; i++) {
+            starts[size + i] = other.starts[from + i] + shift;
+            ends[size + i] = other.ends[from + i] + shift;
+        }
+
+        size += count;
+    }
+
+    /**
+     * Finds the token that starts at an offset
+     * @param offset the offset in the source
+     * @param from the index to start searching at
+     * @return the index of the token, or -1 if no token starts at the offset
+     */
+    public int indexOfStart(int offset, int from) {
+        int index = Arrays.binarySearch(starts, from, size, offset);
+
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Finds the first token that ends at or after an offset
+     * @param offset the offset in the source
+     * @return the index of the token, or the size of the buffer if every token ends before the offset
+     */
+    public int indexOfEnd(int offset) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (ends[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public int symbol(int index) {
+        return symbolIds[index];
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Gets a token of the buffer, tokens are shared instances so no object is created
+     * @param index the index of the token
+     * @return the token at the index
+     */
+    public Token token(int index) {
+        int symbol = symbolIds[index];
+
+        return symbol < 0 ? Token.of(type(index)) : symbols.token(symbol);
+    }
+
+    /**
+     * Creates a source that supplies the tokens of the buffer in order
+     * @return a token source over the buffer
+     */
+    public TokenSource source() {
+        return source(0);
+    }
+
+    /**
+     * Creates a source that supplies the tokens of the buffer in order, starting part way through
+     * @param from the index of the first token to supply
+     * @return a token source over the rest of the buffer
+     */
+    public TokenSource source(int from) {
+        return new TokenSource() {
+            private int next = from;
+
+            @Override
+            public Token next() {
+                return next < size ? token(next++) : null;
+            }
+        };
+    }
+}
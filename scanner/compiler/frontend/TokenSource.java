@@ -0,0 +1,28 @@
+package compiler.frontend;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Supplies tokens to the parser one at a time, only doing the work for a token when it is requested
+ */
+public interface TokenSource {
+
+    /**
+     * Gets the next token of the input
+     * @return the next token, or null once the input is exhausted
+     */
+    Token next() throws IOException;
+
+    /**
+     * Wraps an already scanned list of tokens
+     * @param tokens the tokens to supply
+     * @return a token source over the list
+     */
+    static TokenSource of(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+}
@@ -2,30 +2,48 @@ package compiler.frontend;
 
 public enum TokenType {
     IDENTIFIER,
-    SEMICOLON,
-    NOT_EQUAL,
-    ASSIGN,
-    EQUAL,
-    LESS_THAN,
-    LESS_THAN_OR_EQUAL,
-    GREATER_THAN,
-    GREATER_THAN_OR_EQUAL,
-    ADD,
-    INCREMENT,
-    SUBTRACT,
-    DECREMENT,
-    MULTIPLY,
-    DIVIDE,
+    SEMICOLON(";"),
+    NOT_EQUAL("!="),
+    ASSIGN("="),
+    EQUAL("=="),
+    LESS_THAN("<"),
+    LESS_THAN_OR_EQUAL("<="),
+    GREATER_THAN(">"),
+    GREATER_THAN_OR_EQUAL(">="),
+    ADD("+"),
+    INCREMENT("++"),
+    SUBTRACT("-"),
+    DECREMENT("--"),
+    MULTIPLY("*"),
+    DIVIDE("/"),
     INTEGER,
     DOUBLE,
-    CLOSING_PARENTHESIS,
-    OPENING_PARENTHESIS,
-    CLOSING_CURLY_BRACKET,
-    OPENING_CURLY_BRACKET,
-    KEYWORD_FOR,
-    KEYWORD_IF,
-    KEYWORD_INT,
-    KEYWORD_WHILE,
-    KEYWORD_ELSE,
-    KEYWORD_DOUBLE
+    CLOSING_PARENTHESIS(")"),
+    OPENING_PARENTHESIS("("),
+    CLOSING_CURLY_BRACKET("}"),
+    OPENING_CURLY_BRACKET("{"),
+    KEYWORD_FOR("for"),
+    KEYWORD_IF("if"),
+    KEYWORD_INT("int"),
+    KEYWORD_WHILE("while"),
+    KEYWORD_ELSE("else"),
+    KEYWORD_DOUBLE("double");
+
+    private final String spelling;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String spelling) {
+        this.spelling = spelling;
+    }
+
+    /**
+     * Gets the fixed text of keywords and punctuation
+     * @return the text every token of this type has, or null if the text varies (identifiers and numbers)
+     */
+    public String getSpelling() {
+        return spelling;
+    }
 }
@@ -110,6 +110,14 @@ public class MiniVM {
 		}
 	}
 
+	public boolean isHalted() {
+		return halt;
+	}
+
+	public float getFloat(int address) {
+		return Float.intBitsToFloat(mem[address]);
+	}
+
 	private void executeInstr() {
 		switch (ir.instructionType()) {
 			case CLR -> {